@@ -0,0 +1,134 @@
+package app.client;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import app.client.model.Delta;
+import app.client.model.Media;
+import app.client.model.User;
+import app.client.model.UserMedia;
+import reactor.core.publisher.Mono;
+
+// Local copy of the catalogue, kept in a file between runs and brought up to date with the
+// ?since= endpoints, so a run only downloads what changed since the previous one
+public class Snapshot {
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private Map<Long, Media> media = new HashMap<>();
+    private Map<Long, User> users = new HashMap<>();
+    private Map<Long, UserMedia> userMedia = new HashMap<>();
+    private String mediaToken = ""; // empty until the first sync, which fetches everything
+    private String usersToken = "";
+    private String userMediaToken = "";
+
+    public static Snapshot load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new Snapshot();
+        }
+        return MAPPER.readValue(file.toFile(), Snapshot.class);
+    }
+
+    public void save(Path file) throws IOException {
+        MAPPER.writeValue(file.toFile(), this);
+    }
+
+    public Mono<Snapshot> sync(WebClient webClient) {
+        return sync(webClient, "/media", new ParameterizedTypeReference<Delta<Media>>() {}, mediaToken, media,
+                        Media::getId, token -> mediaToken = token)
+                .then(sync(webClient, "/users", new ParameterizedTypeReference<Delta<User>>() {}, usersToken, users,
+                        User::getId, token -> usersToken = token))
+                .then(sync(webClient, "/user-media", new ParameterizedTypeReference<Delta<UserMedia>>() {}, userMediaToken,
+                        userMedia, UserMedia::getId, token -> userMediaToken = token))
+                .thenReturn(this);
+    }
+
+    // Upserts first and deletes second, so a row changed and then deleted since the token ends up gone.
+    // 410 means the token is older than the server keeps deletes for; start over from a full fetch.
+    // The server answers in pages, so keep asking with each new token while it says there is more
+    private <T> Mono<Void> sync(WebClient webClient, String path, ParameterizedTypeReference<Delta<T>> type,
+            String token, Map<Long, T> rows, Function<T, Long> idOf, Consumer<String> saveToken) {
+        Mono<Delta<T>> full = fetch(webClient, path, type, "").doOnNext(delta -> rows.clear());
+        Mono<Delta<T>> changes = token.isEmpty()
+                ? full
+                : fetch(webClient, path, type, token).onErrorResume(WebClientResponseException.Gone.class, e -> full);
+        return changes
+                .expand(delta -> delta.isMore() ? fetch(webClient, path, type, delta.getToken()) : Mono.empty())
+                .doOnNext(delta -> {
+                    delta.getItems().forEach(item -> rows.put(idOf.apply(item), item));
+                    delta.getDeleted().forEach(rows::remove);
+                    saveToken.accept(delta.getToken());
+                })
+                .then();
+    }
+
+    private static <T> Mono<Delta<T>> fetch(WebClient webClient, String path, ParameterizedTypeReference<Delta<T>> type,
+            String token) {
+        return webClient.get().uri(uri -> uri.path(path).queryParam("since", token).build())
+                .retrieve()
+                .bodyToMono(type);
+    }
+
+    public Map<Long, Media> getMedia() {
+        return media;
+    }
+
+    public void setMedia(Map<Long, Media> media) {
+        this.media = media;
+    }
+
+    public Map<Long, User> getUsers() {
+        return users;
+    }
+
+    public void setUsers(Map<Long, User> users) {
+        this.users = users;
+    }
+
+    public Map<Long, UserMedia> getUserMedia() {
+        return userMedia;
+    }
+
+    public void setUserMedia(Map<Long, UserMedia> userMedia) {
+        this.userMedia = userMedia;
+    }
+
+    public String getMediaToken() {
+        return mediaToken;
+    }
+
+    public void setMediaToken(String mediaToken) {
+        this.mediaToken = mediaToken;
+    }
+
+    public String getUsersToken() {
+        return usersToken;
+    }
+
+    public void setUsersToken(String usersToken) {
+        this.usersToken = usersToken;
+    }
+
+    public String getUserMediaToken() {
+        return userMediaToken;
+    }
+
+    public void setUserMediaToken(String userMediaToken) {
+        this.userMediaToken = userMediaToken;
+    }
+}
@@ -0,0 +1,34 @@
+package app.client;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import reactor.core.publisher.Flux;
+
+// The first n items of a Flux in the given order, kept in a heap of n items while the Flux is
+// read instead of sorting all of it. Used for reports over the local snapshot, where the
+// server's /media/top is not needed
+final class TopN {
+
+    private TopN() {
+    }
+
+    static <T> Flux<T> of(Flux<T> items, int n, Comparator<T> order) {
+        // Worst kept item on top, so it is the one replaced
+        return items.collect(() -> new PriorityQueue<T>(n + 1, order.reversed()), (heap, item) -> {
+                    if (heap.size() < n) {
+                        heap.add(item);
+                    } else if (order.compare(item, heap.peek()) < 0) {
+                        heap.poll();
+                        heap.add(item);
+                    }
+                })
+                .flatMapIterable(heap -> {
+                    List<T> best = new ArrayList<>(heap);
+                    best.sort(order);
+                    return best;
+                });
+    }
+}
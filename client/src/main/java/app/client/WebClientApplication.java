@@ -2,36 +2,100 @@ package app.client;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import app.client.model.CursorPage;
 import app.client.model.Media;
+import app.client.model.MediaStats;
+import app.client.model.MediaSubscribers;
 import app.client.model.User;
 import app.client.model.UserMedia;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 import reactor.util.retry.Retry;
 
 @SpringBootApplication
 public class WebClientApplication {
 
+    private static final LocalDate EIGHTIES_START = LocalDate.of(1980, 1, 1);
+
+    private static final LocalDate EIGHTIES_END = LocalDate.of(1989, 12, 31);
+
+    // The most /media/top returns at once; the report reads page after page of it
+    private static final int EIGHTIES_PAGE_SIZE = 1000;
+
+    private static final ParameterizedTypeReference<CursorPage<Media>> MEDIA_PAGE = new ParameterizedTypeReference<>() {};
+
     public static void main(String[] args) {
-        WebClient webClient = WebClient.create("http://localhost:8080"); 
-        writeAllMediaTitlesAndReleaseDates(webClient);
+        // Ask for Smile, which is smaller and cheaper to parse than JSON, and for gzip; endpoints that
+        // only produce JSON still answer with JSON
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost:8080")
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().compress(true)))
+                .codecs(codecs -> {
+                    codecs.customCodecs().register(new Jackson2SmileDecoder());
+                    codecs.customCodecs().register(new Jackson2SmileEncoder());
+                })
+                .defaultHeader(HttpHeaders.ACCEPT, "application/stream+x-jackson-smile, application/json;q=0.9")
+                .build();
+
+        // --incremental reads media, users and links from a local snapshot, fetching only what changed
+        Flux<Media> media;
+        Flux<User> users;
+        Flux<UserMedia> userMedia;
+        Flux<Media> eightiesByRating;
+        Flux<Media> oldest;
+        if (Arrays.asList(args).contains("--incremental")) {
+            Snapshot snapshot = syncSnapshot(webClient);
+            media = Flux.fromIterable(snapshot.getMedia().values());
+            users = Flux.fromIterable(snapshot.getUsers().values());
+            userMedia = Flux.fromIterable(snapshot.getUserMedia().values());
+            eightiesByRating = media.filter(item -> item.getReleaseDate() != null
+                            && !item.getReleaseDate().isBefore(EIGHTIES_START) && !item.getReleaseDate().isAfter(EIGHTIES_END))
+                    .sort(Comparator.comparing(Media::getAverageRating, Comparator.nullsLast(Comparator.<Double>reverseOrder()))
+                            .thenComparing(Media::getId));
+            oldest = TopN.of(media.filter(item -> item.getReleaseDate() != null), 1,
+                    Comparator.comparing(Media::getReleaseDate).thenComparing(Media::getId));
+        } else {
+            media = webClient.get().uri("/media").retrieve().bodyToFlux(Media.class);
+            users = webClient.get().uri("/users").retrieve().bodyToFlux(User.class);
+            userMedia = webClient.get().uri("/user-media").retrieve().bodyToFlux(UserMedia.class);
+            // Each page starts after the last item of the previous one; the last page has no cursor
+            eightiesByRating = eightiesPage(webClient, null)
+                    .expand(page -> page.getNextCursor() != null ? eightiesPage(webClient, page.getNextCursor()) : Mono.empty())
+                    .flatMapIterable(CursorPage::getItems);
+            oldest = webClient.get().uri("/media/top?by=releaseDate&order=asc&n=1")
+                    .retrieve()
+                    .bodyToMono(MEDIA_PAGE)
+                    .flatMapIterable(CursorPage::getItems);
+        }
+
+        writeAllMediaTitlesAndReleaseDates(media);
         writeTotalCountOfMediaItems(webClient);
         writeMediaItemsWithHighRatings(webClient);
-        writeMediaThatIsSubscribed(webClient);
-        writeMediaFromTheEighties(webClient);
-        writeOldestMediaItemName(webClient);
+        writeMediaThatIsSubscribed(userMedia);
+        writeMediaFromTheEighties(eightiesByRating);
+        writeOldestMediaItemName(oldest);
         writeAverageAndStandardDeviationOfMediaRatings(webClient);
         writeAverageNumberOfUsersPerMedia(webClient);
         writeUserDataWithSubscribedMedia(webClient);
-        writeAllUserInformation(webClient); 
+        writeAllUserInformation(users);
 
         try {
             Thread.sleep(5000);
@@ -41,12 +105,36 @@ public class WebClientApplication {
         }
     }
 
-    //1 Titles and release dates of all media items
-    private static void writeAllMediaTitlesAndReleaseDates(WebClient webClient) {
-        webClient.get().uri("/media")
+    private static Mono<CursorPage<Media>> eightiesPage(WebClient webClient, String after) {
+        return webClient.get()
+                .uri(uri -> uri.path("/media/top")
+                        .queryParam("by", "rating")
+                        .queryParam("order", "desc")
+                        .queryParam("from", EIGHTIES_START)
+                        .queryParam("to", EIGHTIES_END)
+                        .queryParam("n", EIGHTIES_PAGE_SIZE)
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .build())
                 .retrieve()
-                .bodyToFlux(Media.class)
-                .reduce("", (string, media) -> string + "Title: " + media.getTitle() + ", Release Date: " + media.getReleaseDate() + "\n")
+                .bodyToMono(MEDIA_PAGE);
+    }
+
+    private static Snapshot syncSnapshot(WebClient webClient) {
+        Path file = Path.of("snapshot.json");
+        try {
+            Snapshot snapshot = Snapshot.load(file).sync(webClient).block();
+            snapshot.save(file);
+            return snapshot;
+        } catch (Exception e) {
+            System.out.println("Could not update the local snapshot: " + e.getMessage());
+            return new Snapshot();
+        }
+    }
+
+    //1 Titles and release dates of all media items
+    private static void writeAllMediaTitlesAndReleaseDates(Flux<Media> media) {
+        media
+                .reduce("", (string, item) -> string + "Title: " + item.getTitle() + ", Release Date: " + item.getReleaseDate() + "\n")
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
                     System.out.println("An error occurred: " + e.getMessage());
@@ -62,17 +150,10 @@ public class WebClientApplication {
     
     //2 Total count of media items
     private static void writeTotalCountOfMediaItems(WebClient webClient) {
-        webClient.get().uri("/media")
+        webClient.get().uri("/media/stats")
                 .retrieve()
-                .bodyToFlux(Media.class)
-                .count()
-                .switchIfEmpty(Mono.fromRunnable(() -> {
-                    try (FileWriter fileWriter = new FileWriter("countMediaItems.txt", false)) {
-                        fileWriter.write("No media items found.\n");
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }))
+                .bodyToMono(MediaStats.class)
+                .map(MediaStats::getCount)
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
                     System.out.println("An error occurred: " + e.getMessage());
@@ -88,11 +169,10 @@ public class WebClientApplication {
     
     //3 Total count of media items that are really good (rating >8)
     private static void writeMediaItemsWithHighRatings(WebClient webClient) {
-        webClient.get().uri("/media")
+        webClient.get().uri("/media/stats")
                 .retrieve()
-                .bodyToFlux(Media.class)
-                .filter(media -> media.getAverageRating() > 8)
-                .count() 
+                .bodyToMono(MediaStats.class)
+                .map(MediaStats::getHighRatedCount)
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
                     System.out.println("An error occurred: " + e.getMessage());
@@ -108,11 +188,9 @@ public class WebClientApplication {
     }
     
     //4 Total count of media that is subscribed
-    private static void writeMediaThatIsSubscribed(WebClient webClient) {
+    private static void writeMediaThatIsSubscribed(Flux<UserMedia> userMedia) {
         Set<Long> uniqueSet = new HashSet<>();
-        webClient.get().uri("/user-media")
-                .retrieve()
-                .bodyToFlux(UserMedia.class)
+        userMedia
                 .filter(data -> uniqueSet.add(data.getMediaId()))
                 .count()
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2))) 
@@ -130,14 +208,10 @@ public class WebClientApplication {
     }
 
     //5 Total count of media that are from the the 80's 
-    private static void writeMediaFromTheEighties(WebClient webClient) {
-        webClient.get().uri("/media")
-                .retrieve()
-                .bodyToFlux(Media.class)
-                .filter(media -> media.getReleaseDate().isAfter(LocalDate.of(1980, 1, 1)) &&
-                                 media.getReleaseDate().isBefore(LocalDate.of(1989, 12, 31)))
-                .sort((m1, m2) -> Double.compare(m2.getAverageRating(), m1.getAverageRating()))
-                .reduce("", (string, media) -> string + "Title: " + media.getTitle() + ", Rating: " + media.getAverageRating() + "\n")
+    private static void writeMediaFromTheEighties(Flux<Media> eightiesByRating) {
+        eightiesByRating
+                .reduce("", (string, media) -> string + "Title: " + media.getTitle() + ", Rating: "
+                        + (media.getAverageRating() != null ? media.getAverageRating() : "unrated") + "\n")
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
                     System.out.println("An error occurred: " + e.getMessage());
@@ -153,22 +227,10 @@ public class WebClientApplication {
 
     //6 Average and Standard deviations of all media items ratings
     private static void writeAverageAndStandardDeviationOfMediaRatings(WebClient webClient) {
-        webClient.get().uri("/media")
+        webClient.get().uri("/media/stats")
                 .retrieve()
-                .bodyToFlux(Media.class)
-                .map(Media::getAverageRating)
-                .reduce(new double[]{0.0, 0.0, 0.0}, (data, rating) -> {
-                    data[0] += rating; 
-                    data[1] += 1;      
-                    data[2] += Math.pow(rating, 2);
-                    return data;
-                })
-                .map(data -> {
-                    double average = data[0] / data[1];  
-                    double variance = (data[2] / data[1]) - Math.pow(average, 2);  
-                    double standardDeviation = Math.sqrt(variance);  
-                    return new double[]{average, standardDeviation};
-                })
+                .bodyToMono(MediaStats.class)
+                .filter(stats -> stats.getAverageRating() != null)
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
                     System.out.println("An error occurred: " + e.getMessage());
@@ -176,8 +238,8 @@ public class WebClientApplication {
                 })
                 .subscribe(stats -> {
                     try (FileWriter fileWriter = new FileWriter("mediaRatingsStats.txt", false)) {
-                        fileWriter.write("Average rating: " + stats[0] + "\n");
-                        fileWriter.write("Standard deviation: " + stats[1] + "\n");
+                        fileWriter.write("Average rating: " + stats.getAverageRating() + "\n");
+                        fileWriter.write("Standard deviation: " + stats.getRatingStandardDeviation() + "\n");
                     } catch (IOException e) {
                         e.printStackTrace();
                     }
@@ -186,11 +248,9 @@ public class WebClientApplication {
 
     
     //7 Name of the oldest media item
-    private static void writeOldestMediaItemName(WebClient webClient) {
-        webClient.get().uri("/media")
-                .retrieve()
-                .bodyToFlux(Media.class)
-                .reduce((oldest, media) -> media.getReleaseDate().isBefore(oldest.getReleaseDate()) ? media : oldest)
+    private static void writeOldestMediaItemName(Flux<Media> oldest) {
+        oldest
+                .next()
                 .map(Media::getTitle)
                 .switchIfEmpty(Mono.just("No media items available"))
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
@@ -208,31 +268,9 @@ public class WebClientApplication {
 
     //8 Average number of users per media item
     private static void writeAverageNumberOfUsersPerMedia(WebClient webClient) {
-        Flux<UserMedia> userMediaFlux = webClient.get()
-                .uri("/user-media")
-                .retrieve()
-                .bodyToFlux(UserMedia.class);
-
-        Flux<Media> mediaFlux = webClient.get()
-                .uri("/media")
+        webClient.get().uri("/media/subscribers/average")
                 .retrieve()
-                .bodyToFlux(Media.class);
-        mediaFlux
-                .flatMap(media -> 
-                    userMediaFlux
-                        .filter(userMedia -> userMedia.getMediaId().equals(media.getId()))
-                        .count()
-                        .map(userCount -> new long[]{userCount, 1L}) 
-                )
-                .reduce(new long[]{0, 0}, (data, userData) -> {
-                    data[0] += userData[0]; 
-                    data[1] += userData[1]; 
-                    return data;
-                })
-                .map(data -> {
-                    double averageUsersPerMedia = data[1] == 0 ? 0 : (double) data[0] / data[1];
-                    return averageUsersPerMedia;
-                })
+                .bodyToMono(Double.class)
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
                     System.out.println("An error occurred: " + e.getMessage());
@@ -249,36 +287,12 @@ public class WebClientApplication {
 
     //9 Name and number of users per media item sorted by age in descending order
     private static void writeUserDataWithSubscribedMedia(WebClient webClient) {
-        webClient.get().uri("/user-media")
+        webClient.get().uri("/user-media/expanded/by-media?ageOrder=desc")
                 .retrieve()
-                .bodyToFlux(UserMedia.class)
-                .flatMap(userMedia -> 
-                    webClient.get().uri("/users/{id}", userMedia.getUserId())
-                        .retrieve()
-                        .bodyToMono(User.class)
-                        .flatMap(user -> 
-                            webClient.get().uri("/media/{id}", userMedia.getMediaId())
-                                .retrieve()
-                                .bodyToMono(Media.class)
-                                .map(media -> Map.entry(media.getTitle(), user))
-                        )
-                )
-                .groupBy(Map.Entry::getKey) 
-                .flatMap(mediaGroup -> mediaGroup
-                        .sort((age1, age2) -> Integer.compare(age2.getValue().getAge(), age1.getValue().getAge())) 
-                        .reduce( "", (string, entry) -> {
-                                String mediaTitle = entry.getKey();
-                                User user = entry.getValue();
-                                String userInfo = user.getName() + " (Age: " + user.getAge() + ")";
-                                if (string.isEmpty()) {
-                                    string = "Media: " + mediaTitle + ", Users: " + userInfo;
-                                } else {
-                                    string += ", " + userInfo;
-                                }
-                                return string;
-                            }
-                        )
-                )
+                .bodyToFlux(MediaSubscribers.class)
+                .map(mediaGroup -> "Media: " + mediaGroup.getMediaTitle() + ", Users: " + mediaGroup.getUsers().stream()
+                        .map(user -> user.getName() + " (Age: " + user.getAge() + ")")
+                        .collect(Collectors.joining(", ")))
                 .reduce((result1, result2) -> result1 + "\n" + result2)  
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
@@ -296,10 +310,8 @@ public class WebClientApplication {
     
 
     //10 User information without media subscriptions
-    private static void writeAllUserInformation(WebClient webClient) {
-        webClient.get().uri("/users")
-                .retrieve()
-                .bodyToFlux(User.class)
+    private static void writeAllUserInformation(Flux<User> users) {
+        users
                 .reduce("", (string, user) -> string + "User: " + user.getName() + ", Age: " + user.getAge() + ", Gender: " + user.getGender() + "\n")
                 .retryWhen(Retry.backoff(3, java.time.Duration.ofSeconds(2)))
                 .onErrorResume(Exception.class, e -> {
@@ -6,7 +6,7 @@ public class Media {
     private Long id;        
     private String title;   
     private LocalDate releaseDate; 
-    private double averageRating; // between 0 and 10
+    private Double averageRating; // between 0 and 10, null when unrated
     private String type; // Movie or TV Show
 
     public Long getId() {
@@ -33,11 +33,11 @@ public class Media {
         this.releaseDate = releaseDate;
     }
 
-    public double getAverageRating() {
+    public Double getAverageRating() {
         return averageRating;
     }
 
-    public void setAverageRating(double averageRating) {
+    public void setAverageRating(Double averageRating) {
         this.averageRating = averageRating;
     }
 
@@ -0,0 +1,18 @@
+#!/bin/bash
+# Hot standby of the db service: clones it with pg_basebackup on first start, then follows it
+# by streaming replication. Read-only; the application sends replica reads here
+set -e
+
+if [ ! -s "$PGDATA/PG_VERSION" ]; then
+    until PGPASSWORD="$REPLICATION_PASSWORD" pg_basebackup -h "$PRIMARY_HOST" -U replicator -D "$PGDATA" -R -X stream; do
+        echo "Waiting for the primary at $PRIMARY_HOST"
+        rm -rf "${PGDATA:?}"/*
+        sleep 2
+    done
+    chmod 700 "$PGDATA"
+fi
+
+# hot_standby_feedback keeps the primary from vacuuming away rows a replica query still reads, so
+# long exports and streams are not cancelled by recovery conflicts; the cost is bloat on the
+# primary while they run
+exec docker-entrypoint.sh postgres -c hot_standby_feedback=on
@@ -0,0 +1,40 @@
+#!/usr/bin/env sh
+# Measures how long the backend takes from process start until it answers /actuator/health, for a
+# few runs of each variant, and prints the JVM's own application.ready.time of each run next to it.
+# Needs Postgres running (docker compose up db) and a jar built with: ./mvnw -Pcds -DskipTests package
+#
+#   scripts/startup-time.sh [runs]
+set -eu
+
+RUNS=${1:-5}
+cd "$(dirname "$0")/.."
+APP=target/application
+JAR=project-0.0.1-SNAPSHOT.jar
+URL=http://localhost:8080
+
+measure() {
+    name=$1
+    shift
+    total=0
+    for run in $(seq "$RUNS"); do
+        start=$(date +%s%N)
+        (cd "$APP" && exec java "$@" -jar "$JAR" > /dev/null 2>&1) &
+        pid=$!
+        until curl -sf "$URL/actuator/health" > /dev/null; do
+            sleep 0.02
+        done
+        elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+        ready=$(curl -s "$URL/actuator/prometheus" | awk '/^application_ready_time_seconds/ { print $2 }')
+        kill "$pid"
+        wait "$pid" 2> /dev/null || true
+        total=$((total + elapsed))
+        echo "$name run $run: ${elapsed}ms until healthy, application.ready.time ${ready}s"
+    done
+    echo "$name average: $((total / RUNS))ms"
+}
+
+measure default
+measure lazy -Dspring.profiles.active=lazy
+measure aot -Dspring.aot.enabled=true
+measure aot+cds -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true
+measure aot+cds+lazy -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -Dspring.profiles.active=lazy
@@ -0,0 +1,77 @@
+package app.project.config;
+
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.server.NotAcceptableStatusException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Smile and CBOR next to JSON, picked by the Accept header. Both use the same Jackson settings as
+// the JSON codec. For bulk lists, application/stream+x-jackson-smile and application/cbor-seq
+// stream row by row like NDJSON
+@Configuration
+public class CodecConfig implements WebFluxConfigurer {
+
+    public static final MediaType CBOR_SEQUENCE = MediaType.parseMediaType("application/cbor-seq");
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        ObjectMapper smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+        ObjectMapper cborMapper = objectMapperBuilder.factory(new CBORFactory()).build();
+        // Smile has default codecs, which come before custom ones, so those are replaced; CBOR has none
+        configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper));
+        configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper));
+        configurer.customCodecs().register(new CborSequenceEncoder(cborMapper));
+        configurer.customCodecs().register(new Jackson2CborDecoder(cborMapper));
+    }
+
+    // Jackson2CborEncoder rejects multi-value publishers. A Flux is sent as an RFC 8742 CBOR sequence
+    // instead, one item after another with nothing in between, flushed as it goes like NDJSON. Plain
+    // application/cbor has no way to stream, so a Flux asked for in it gets 406 rather than being
+    // collected into one array in memory
+    private static class CborSequenceEncoder extends Jackson2CborEncoder {
+
+        CborSequenceEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR, CBOR_SEQUENCE);
+            setStreamingMediaTypes(List.of(CBOR_SEQUENCE));
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (inputStream instanceof Mono) {
+                return Mono.from(inputStream)
+                        .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                        .flux();
+            }
+            if (mimeType == null || !CBOR_SEQUENCE.isCompatibleWith(mimeType)) {
+                return Flux.error(new NotAcceptableStatusException(List.of(CBOR_SEQUENCE, MediaType.APPLICATION_JSON)));
+            }
+            return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package app.project.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import app.project.model.Media;
+import app.project.model.User;
+import app.project.repository.MediaRepository;
+import app.project.repository.UserRepository;
+import app.project.service.BatchLoader;
+import app.project.service.EntityCache;
+import app.project.service.SingleFlight;
+
+@Configuration
+public class LookupConfig {
+
+    @Value("${app.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${app.cache.ttl:60s}")
+    private Duration cacheTtl;
+
+    @Value("${app.lookup.batch.max-size:100}")
+    private int batchMaxSize;
+
+    @Value("${app.lookup.batch.window:2ms}")
+    private Duration batchWindow;
+
+    @Value("${app.lookup.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    @Bean
+    public EntityCache<Media> mediaCache() {
+        return new EntityCache<>("media", cacheMaxSize, cacheTtl);
+    }
+
+    @Bean
+    public EntityCache<User> userCache() {
+        return new EntityCache<>("users", cacheMaxSize, cacheTtl);
+    }
+
+    @Bean
+    public SingleFlight<Long, Media> mediaLookups() {
+        return new SingleFlight<>("media");
+    }
+
+    @Bean
+    public SingleFlight<Long, User> userLookups() {
+        return new SingleFlight<>("users");
+    }
+
+    @Bean
+    public BatchLoader<Media> mediaLoader(MediaRepository mediaRepository) {
+        return new BatchLoader<>(mediaRepository::findAllByIdAny, Media::getId, batchMaxSize, batchWindow, batchConcurrency);
+    }
+
+    @Bean
+    public BatchLoader<User> userLoader(UserRepository userRepository) {
+        return new BatchLoader<>(userRepository::findAllByIdAny, User::getId, batchMaxSize, batchWindow, batchConcurrency);
+    }
+}
@@ -0,0 +1,46 @@
+package app.project.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.util.function.SingletonSupplier;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+
+// Pool gauges (acquired, pending, idle, ...) and http.server.requests come from Boot; these add
+// the connection acquire time and per repository method query timers. Histograms are enabled in
+// application.properties
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionAcquireMetrics(ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ConnectionPool pool) {
+                    return new TimedConnectionFactory(pool, beanName, registry);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor repositoryQueryMetrics(ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxy, repository) -> proxy.addAdvice(new RepositoryMetricsInterceptor(
+                                    repository.getRepositoryInterface().getSimpleName(), SingletonSupplier.of(registry::getObject)))));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,90 @@
+package app.project.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+
+// With app.r2dbc.replica.url set, Boot's pool becomes the primary behind a routing factory, and a
+// second pool is opened against the replica, configured by app.r2dbc.replica.* in the same shape as
+// spring.r2dbc.* and falling back to the primary's credentials. Like StartupConfig this is decided
+// at runtime rather than by a conditional bean, so a cds image can be pointed at a replica later
+@Configuration
+public class ReadReplicaConfig {
+
+    private static final String REPLICA_PREFIX = "app.r2dbc.replica";
+
+    private static final String REPLICA_NAME = "replicaConnectionFactory";
+
+    @Bean
+    public static BeanPostProcessor replicaRouting(Environment environment, ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!"connectionFactory".equals(beanName) || !(bean instanceof ConnectionFactory)
+                        || environment.getProperty(REPLICA_PREFIX + ".url", "").isEmpty()) {
+                    return bean;
+                }
+                // connectionAcquireMetrics may not have wrapped the primary yet, and will not see it once routed
+                ConnectionFactory primary = bean instanceof ConnectionPool pool
+                        ? new TimedConnectionFactory(pool, beanName, registry)
+                        : (ConnectionFactory) bean;
+                Binder binder = Binder.get(environment);
+                R2dbcProperties primaryProperties = binder.bindOrCreate("spring.r2dbc", R2dbcProperties.class);
+                R2dbcProperties replicaProperties = binder.bindOrCreate(REPLICA_PREFIX, R2dbcProperties.class);
+                if (replicaProperties.getUsername() == null) {
+                    replicaProperties.setUsername(primaryProperties.getUsername());
+                    replicaProperties.setPassword(primaryProperties.getPassword());
+                }
+                ConnectionFactory replica = new TimedConnectionFactory(pool(replicaProperties, "replica"), REPLICA_NAME, registry);
+                return new ReplicaRoutingConnectionFactory(primary, replica);
+            }
+        };
+    }
+
+    // Boot's gauges only cover pools that are beans, which the replica pool is not
+    @Bean
+    public MeterBinder replicaPoolMetrics(ObjectProvider<ConnectionFactory> connectionFactory) {
+        return registry -> {
+            if (connectionFactory.getIfUnique() instanceof ReplicaRoutingConnectionFactory routing
+                    && routing.replica() instanceof TimedConnectionFactory replica) {
+                new ConnectionPoolMetrics((ConnectionPool) replica.unwrap(), REPLICA_NAME, Tags.empty()).bindTo(registry);
+            }
+        };
+    }
+
+    // The subset of Boot's pool setup this application uses
+    private static ConnectionPool pool(R2dbcProperties properties, String name) {
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        ConnectionFactoryBuilder connectionFactory = ConnectionFactoryBuilder.withUrl(properties.getUrl());
+        map.from(properties.getUsername()).to(connectionFactory::username);
+        map.from(properties.getPassword()).to(connectionFactory::password);
+
+        R2dbcProperties.Pool settings = properties.getPool();
+        ConnectionPoolConfiguration.Builder pool = ConnectionPoolConfiguration.builder(connectionFactory.build()).name(name);
+        map.from(settings.getInitialSize()).to(pool::initialSize);
+        map.from(settings.getMaxSize()).to(pool::maxSize);
+        map.from(settings.getMinIdle()).to(pool::minIdle);
+        map.from(settings.getMaxIdleTime()).to(pool::maxIdleTime);
+        map.from(settings.getMaxLifeTime()).to(pool::maxLifeTime);
+        map.from(settings.getMaxAcquireTime()).to(pool::maxAcquireTime);
+        map.from(settings.getMaxCreateConnectionTime()).to(pool::maxCreateConnectionTime);
+        map.from(settings.getMaxValidationTime()).to(pool::maxValidationTime);
+        map.from(settings.getValidationQuery()).to(pool::validationQuery);
+        map.from(settings.getValidationDepth()).to(pool::validationDepth);
+        return new ConnectionPool(pool.build());
+    }
+}
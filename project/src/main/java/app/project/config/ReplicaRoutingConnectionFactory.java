@@ -0,0 +1,59 @@
+package app.project.config;
+
+import java.util.Map;
+
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+
+import app.project.repository.ReplicaRouting;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+// Hands out connections from the primary or the replica pool, as ReplicaRouting picks from the
+// subscriber's context. The key is looked up once per connection, so a query chain that shares a
+// connection, such as a transaction, stays on the pool it started on. Unwraps to the primary, so
+// Boot's pool gauges and the startup warmup keep finding it, and disposes of both pools
+class ReplicaRoutingConnectionFactory extends AbstractRoutingConnectionFactory
+        implements Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory primary;
+
+    private final ConnectionFactory replica;
+
+    ReplicaRoutingConnectionFactory(ConnectionFactory primary, ConnectionFactory replica) {
+        this.primary = primary;
+        this.replica = replica;
+        setTargetConnectionFactories(Map.of(ReplicaRouting.PRIMARY, primary, ReplicaRouting.REPLICA, replica));
+        setDefaultTargetConnectionFactory(primary);
+        afterPropertiesSet();
+    }
+
+    ConnectionFactory replica() {
+        return replica;
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(context -> Mono.just(ReplicaRouting.target(context)));
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return primary;
+    }
+
+    @Override
+    public void dispose() {
+        for (ConnectionFactory pool : new ConnectionFactory[] {primary, replica}) {
+            if (pool instanceof Disposable disposable) {
+                disposable.dispose();
+            }
+        }
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return primary instanceof Disposable disposable && disposable.isDisposed();
+    }
+}
@@ -0,0 +1,67 @@
+package app.project.config;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Boot's repository metrics time the method call, which for a reactive repository only measures
+// building the Mono. This times each subscription instead, from subscribe to the terminal signal
+class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    private final String repository;
+
+    private final Supplier<MeterRegistry> registry;
+
+    private volatile Meter.MeterProvider<Timer> timers;
+
+    RepositoryMetricsInterceptor(String repository, Supplier<MeterRegistry> registry) {
+        this.repository = repository;
+        this.registry = registry;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        Method method = invocation.getMethod();
+        if (result instanceof Mono<?> mono) {
+            return Mono.defer(() -> {
+                Timer.Sample sample = Timer.start(registry.get());
+                return mono.doFinally(signal -> record(sample, method, signal));
+            });
+        }
+        if (result instanceof Flux<?> flux) {
+            return Flux.defer(() -> {
+                Timer.Sample sample = Timer.start(registry.get());
+                return flux.doFinally(signal -> record(sample, method, signal));
+            });
+        }
+        return result;
+    }
+
+    private void record(Timer.Sample sample, Method method, SignalType signal) {
+        if (timers == null) {
+            timers = Timer.builder("db.repository")
+                    .description("Time from subscribing to a repository query until it completes")
+                    .tag("repository", repository)
+                    .withRegistry(registry.get());
+        }
+        sample.stop(timers.withTags("method", method.getName(), "outcome", outcome(signal)));
+    }
+
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "success";
+            case ON_ERROR -> "error";
+            default -> "cancelled";
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package app.project.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+
+// Startup behaviour is switched by properties read at runtime rather than by conditional beans:
+// with the cds build profile the bean definitions are fixed at build time by AOT processing
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    // The CDS training run refreshes the context during the image build, where there is no database
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(
+            @Value("${app.startup.migrate:true}") boolean migrate) {
+        return flyway -> {
+            if (migrate) {
+                flyway.migrate();
+            }
+        };
+    }
+
+    // Opens spring.r2dbc.pool.initial-size connections before the application reports ready, so
+    // the first requests do not pay for connection setup. Runners are created even when the
+    // context is lazy, which is the profile this is meant for
+    @Bean
+    public ApplicationRunner connectionPoolWarmup(ConnectionFactory connectionFactory,
+            @Value("${app.startup.warmup-pool:false}") boolean warmup) {
+        return args -> {
+            if (!warmup) {
+                return;
+            }
+            warmup(connectionFactory);
+            if (connectionFactory instanceof ReplicaRoutingConnectionFactory routing) {
+                warmup(routing.replica());
+            }
+        };
+    }
+
+    private static void warmup(ConnectionFactory connectionFactory) {
+        ConnectionFactory factory = connectionFactory;
+        while (!(factory instanceof ConnectionPool) && factory instanceof Wrapped<?> wrapped
+                && wrapped.unwrap() instanceof ConnectionFactory inner) {
+            factory = inner;
+        }
+        if (factory instanceof ConnectionPool pool) {
+            long start = System.nanoTime();
+            Integer connections = pool.warmup().block();
+            log.info("Warmed up {} pooled connections in {}ms", connections, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
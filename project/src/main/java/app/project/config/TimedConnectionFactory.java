@@ -0,0 +1,76 @@
+package app.project.config;
+
+import java.util.function.Supplier;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.util.function.SingletonSupplier;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+// Times how long callers wait for a connection, including the wait for a free slot when the pool
+// is exhausted. Implements Wrapped so Boot's pool gauges and anything else that unwraps still
+// reach the ConnectionPool, and Disposable so the pool is still closed on shutdown
+class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionPool pool;
+
+    private final Supplier<MeterRegistry> registry;
+
+    private final Supplier<Timer> acquired;
+
+    private final Supplier<Timer> failed;
+
+    TimedConnectionFactory(ConnectionPool pool, String name, ObjectProvider<MeterRegistry> registry) {
+        this.pool = pool;
+        this.registry = SingletonSupplier.of(registry::getObject);
+        this.acquired = SingletonSupplier.of(() -> acquireTimer(name, "success"));
+        this.failed = SingletonSupplier.of(() -> acquireTimer(name, "failure"));
+    }
+
+    @Override
+    public Publisher<? extends Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry.get());
+            return Mono.from(pool.create())
+                    .doOnSuccess(connection -> sample.stop(acquired.get()))
+                    .doOnError(error -> sample.stop(failed.get()));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return pool.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return pool;
+    }
+
+    @Override
+    public void dispose() {
+        pool.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return pool.isDisposed();
+    }
+
+    private Timer acquireTimer(String name, String outcome) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .description("Time spent waiting for a pooled connection")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(registry.get());
+    }
+}
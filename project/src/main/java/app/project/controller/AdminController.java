@@ -0,0 +1,95 @@
+package app.project.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import app.project.model.CacheStatistics;
+import app.project.model.CoalescingStatistics;
+import app.project.model.ImportProgress;
+import app.project.service.BulkTransfer;
+import app.project.service.EntityCache;
+import app.project.service.SingleFlight;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/admin")
+@Slf4j
+public class AdminController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    @Autowired
+    private List<EntityCache<?>> caches;
+
+    @Autowired
+    private List<SingleFlight<?, ?>> lookups;
+
+    @Autowired
+    private BulkTransfer bulkTransfer;
+
+    @GetMapping("/cache")
+    public Flux<CacheStatistics> getCacheStatistics() {
+        log.debug("Retrieving entity cache statistics");
+        return Flux.fromIterable(caches)
+                .map(cache -> new CacheStatistics(cache.getName(), cache.size(), cache.stats().hitCount(),
+                        cache.stats().missCount(), cache.stats().evictionCount()));
+    }
+
+    @GetMapping("/coalescing")
+    public Flux<CoalescingStatistics> getCoalescingStatistics() {
+        log.debug("Retrieving lookup coalescing statistics");
+        return Flux.fromIterable(lookups)
+                .map(lookup -> new CoalescingStatistics(lookup.getName(), lookup.inFlight(), lookup.deduplicated()));
+    }
+
+    // entity is media, users or user-media. Rows get new ids unless ids is set, in which case the
+    // body carries them; the response reports progress while the body streams in, then the row count
+    @PostMapping(value = "/import/{entity}", consumes = TEXT_CSV_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImportProgress> importCsv(@PathVariable String entity, @RequestParam(defaultValue = "false") boolean ids,
+            @RequestBody Flux<DataBuffer> body) {
+        log.debug("Importing {} from CSV", entity);
+        return bulkTransfer.importCsv(entity, ids, body);
+    }
+
+    @PostMapping(value = "/import/{entity}", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ImportProgress> importNdjson(@PathVariable String entity, @RequestParam(defaultValue = "false") boolean ids,
+            @RequestBody Flux<JsonNode> items) {
+        log.debug("Importing {} from NDJSON", entity);
+        return bulkTransfer.importNdjson(entity, ids, items);
+    }
+
+    // X-Total-Count is counted just before the export query runs, so it can be off by the rows
+    // written in between
+    @GetMapping(value = "/export/{entity}", produces = TEXT_CSV_VALUE)
+    public Mono<ResponseEntity<Flux<String>>> exportCsv(@PathVariable String entity,
+            @RequestParam(defaultValue = "false") boolean ids) {
+        log.debug("Exporting {} as CSV", entity);
+        return bulkTransfer.count(entity)
+                .map(count -> ResponseEntity.ok().header("X-Total-Count", String.valueOf(count))
+                        .body(bulkTransfer.exportCsv(entity, ids)));
+    }
+
+    @GetMapping(value = "/export/{entity}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<?>>> exportNdjson(@PathVariable String entity) {
+        log.debug("Exporting {} as NDJSON", entity);
+        return bulkTransfer.count(entity)
+                .map(count -> ResponseEntity.ok().header("X-Total-Count", String.valueOf(count))
+                        .<Flux<?>>body(bulkTransfer.exportNdjson(entity)));
+    }
+}
@@ -0,0 +1,49 @@
+package app.project.controller;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import app.project.model.Change;
+import app.project.model.ChangeCursor;
+import app.project.service.ChangeFeed;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/changes")
+@Slf4j
+public class ChangeController {
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Value("${app.changes.heartbeat:15s}")
+    private Duration heartbeat;
+
+    // EventSource sends Last-Event-ID when it reconnects; "after" lets a new client start from a known position
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Change>> getChanges(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(required = false) String after) {
+        ChangeCursor position = ChangeCursor.parse(lastEventId != null ? lastEventId : after);
+        log.debug("Streaming changes after event ID: {}", position);
+        Flux<ServerSentEvent<Change>> changes = changeFeed.changes(position)
+                .map(change -> ServerSentEvent.builder(change)
+                        .id(change.cursor().toString())
+                        .event(change.getEntity())
+                        .build());
+        // Comment lines keep idle connections open through proxies
+        Flux<ServerSentEvent<Change>> heartbeats = Flux.interval(heartbeat)
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.<Change>builder().comment("heartbeat").build());
+        return Flux.merge(changes, heartbeats);
+    }
+}
@@ -0,0 +1,38 @@
+package app.project.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+final class ETags {
+
+    private ETags() {
+    }
+
+    // Weak, since the same version is served as JSON, Smile or CBOR, gzipped or not, and those
+    // bodies are not byte for byte the same
+    static String of(Object version) {
+        return "W/\"" + version + "\"";
+    }
+
+    // Maps an If-Match header to the row version it requires; null means no precondition, and "*"
+    // only requires the row to exist. Anything that cannot match a version we issued fails the write.
+    // The tags we issue are weak, and what a write is checked against is the row version rather than
+    // a representation, so a weak tag is accepted here as well as the quoted version alone
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match: " + ifMatch);
+    }
+}
@@ -1,18 +1,34 @@
 package app.project.controller;
 
+import java.time.LocalDate;
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import app.project.model.BatchResult;
+import app.project.model.CursorPage;
+import app.project.model.Delta;
 import app.project.model.Media;
+import app.project.model.MediaPatch;
+import app.project.model.MediaStats;
+import app.project.model.MultiGetEntry;
 import app.project.service.MediaService;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -27,34 +43,127 @@ public class MediaController {
     private MediaService mediaService;
 
     @GetMapping
-    public Flux<Media> getAllMedia() {
-        log.info("Accessed all media items");
-        return mediaService.getAllMedia();
+    public Mono<ResponseEntity<Flux<Media>>> getAllMedia(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Double minRating) {
+        log.debug("Accessed media items released between {} and {} rated above {}", from, to, minRating);
+        // The validator is read before the rows, so a concurrent write can only make the tag older
+        // than the body, never newer. On 304 the rows are never queried
+        return mediaService.getMediaCollectionVersion()
+                .map(version -> ResponseEntity.ok().eTag(ETags.of(version)).body(mediaService.getAllMedia(from, to, minRating)));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Media> streamAllMedia(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Double minRating) {
+        log.debug("Streaming media items released between {} and {} rated above {}", from, to, minRating);
+        return mediaService.streamAllMedia(from, to, minRating);
+    }
+
+    @GetMapping(params = "ids")
+    public Flux<MultiGetEntry<Media>> getMediaByIds(@RequestParam List<Long> ids) {
+        log.debug("Accessed media items with IDs: {}", ids);
+        return mediaService.getMediaByIds(ids);
+    }
+
+    @GetMapping(params = "since")
+    public Mono<Delta<Media>> getMediaChangedSince(@RequestParam String since) {
+        log.debug("Accessed media items changed since token: {}", since);
+        return mediaService.getMediaChangedSince(since);
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CursorPage<Media>> getMediaPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        log.debug("Accessed media page after cursor: {}", after);
+        return mediaService.getMediaPage(after, limit);
+    }
+
+    @GetMapping("/top")
+    public Mono<CursorPage<Media>> getTopMedia(@RequestParam(defaultValue = "rating") String by,
+            @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(defaultValue = "10") int n,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("Accessed top {} media items by {} {} after cursor: {}", n, by, order, after);
+        return mediaService.getTopMedia(by, order, n, after, type, from, to);
+    }
+
+    @GetMapping("/search")
+    public Flux<Media> searchMedia(@RequestParam String q, @RequestParam(defaultValue = "20") int limit) {
+        log.debug("Searching media titles for: {}", q);
+        return mediaService.searchMedia(q, limit);
+    }
+
+    @GetMapping("/stats")
+    public Mono<MediaStats> getMediaStats(@RequestParam(required = false) String type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.debug("Accessed media statistics for type {} between {} and {}", type, from, to);
+        return mediaService.getMediaStats(type, from, to);
+    }
+
+    @GetMapping("/subscribers/average")
+    public Mono<Double> getAverageSubscribersPerMedia() {
+        log.debug("Accessed average number of subscribers per media item");
+        return mediaService.getAverageSubscribersPerMedia();
+    }
+
+    @GetMapping("/{id}/subscribers/count")
+    public Mono<ResponseEntity<Long>> getSubscriberCount(@PathVariable Long id) {
+        log.debug("Accessed subscriber count for media item with ID: {}", id);
+        return mediaService.getSubscriberCount(id)
+                .map(count -> new ResponseEntity<>(count, HttpStatus.OK))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @GetMapping("/{id}")
-    public Mono<Media> getMediaById(@PathVariable Long id) {
-        log.info("Accessed media item with ID: {}", id);
-        return mediaService.getMediaById(id);
+    public Mono<ResponseEntity<Media>> getMediaById(@PathVariable Long id) {
+        log.debug("Accessed media item with ID: {}", id);
+        return mediaService.getMediaById(id)
+                .map(media -> ResponseEntity.ok().eTag(ETags.of(media.getVersion())).body(media))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<Media> createMedia(@RequestBody Media media) {
-        log.info("Creating new media item: {}", media.getTitle());
+        log.debug("Creating new media item: {}", media.getTitle());
         return mediaService.createMedia(media);
     }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<BatchResult> createMediaBatch(@RequestBody Flux<Media> media,
+            @RequestParam(defaultValue = "false") boolean perItemErrors) {
+        log.debug("Creating media items in batch, per-item errors: {}", perItemErrors);
+        return mediaService.createMediaBatch(media, perItemErrors);
+    }
+
     @PutMapping("/{id}")
-    public Mono<Media> updateMedia(@PathVariable Long id, @RequestBody Media updatedMedia) {
-        log.info("Updating media item with ID: {}", id);
-        return mediaService.updateMedia(id, updatedMedia);
+    public Mono<ResponseEntity<Media>> updateMedia(@PathVariable Long id, @RequestBody Media updatedMedia,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Updating media item with ID: {}", id);
+        return mediaService.updateMedia(id, updatedMedia, ETags.expectedVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<Media>> patchMedia(@PathVariable Long id, @RequestBody MediaPatch patch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Patching media item with ID: {}", id);
+        return mediaService.patchMedia(id, patch, ETags.expectedVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping("/{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> deleteMedia(@PathVariable Long id) {
-        log.info("Deleting media item with ID: {}", id);
-        return mediaService.deleteMedia(id);
+    public Mono<ResponseEntity<Void>> deleteMedia(@PathVariable Long id) {
+        log.debug("Deleting media item with ID: {}", id);
+        return mediaService.deleteMedia(id)
+                .map(deleted -> new ResponseEntity<Void>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
     }
 }
@@ -1,19 +1,33 @@
 package app.project.controller;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import app.project.model.BatchResult;
+import app.project.model.CursorPage;
+import app.project.model.Delta;
+import app.project.model.Media;
+import app.project.model.MultiGetEntry;
 import app.project.model.User;
+import app.project.model.UserPatch;
+import app.project.service.MediaService;
 import app.project.service.UserService;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
@@ -27,40 +41,91 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private MediaService mediaService;
+
     @GetMapping
-    public Flux<User> getAllUsers() {
-        log.info("Retrieving all users");
-        return userService.getAllUsers();
+    public Mono<ResponseEntity<Flux<User>>> getAllUsers() {
+        log.debug("Retrieving all users");
+        return userService.getUserCollectionVersion()
+                .map(version -> ResponseEntity.ok().eTag(ETags.of(version)).body(userService.getAllUsers()));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<User> streamAllUsers() {
+        log.debug("Streaming all users");
+        return userService.streamAllUsers();
+    }
+
+    @GetMapping(params = "ids")
+    public Flux<MultiGetEntry<User>> getUsersByIds(@RequestParam List<Long> ids) {
+        log.debug("Retrieving users with IDs: {}", ids);
+        return userService.getUsersByIds(ids);
+    }
+
+    @GetMapping(params = "since")
+    public Mono<Delta<User>> getUsersChangedSince(@RequestParam String since) {
+        log.debug("Retrieving users changed since token: {}", since);
+        return userService.getUsersChangedSince(since);
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CursorPage<User>> getUserPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        log.debug("Retrieving users page after cursor: {}", after);
+        return userService.getUserPage(after, limit);
     }
 
     @GetMapping("/{id}")
     public Mono<ResponseEntity<User>> getUserById(@PathVariable Long id) {
-        log.info("Retrieving user with ID: {}", id);
+        log.debug("Retrieving user with ID: {}", id);
         return userService.getUserById(id)
-                .map(user -> new ResponseEntity<>(user, HttpStatus.OK))
+                .map(user -> ResponseEntity.ok().eTag(ETags.of(user.getVersion())).body(user))
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
+    @GetMapping("/{id}/media")
+    public Flux<Media> getUserMedia(@PathVariable Long id) {
+        log.debug("Retrieving media subscribed by user with ID: {}", id);
+        return mediaService.getMediaForUser(id);
+    }
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<User> createUser(@RequestBody User user) {
-        log.info("Creating new user");
+        log.debug("Creating new user");
         return userService.createUser(user);
     }
 
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public Flux<BatchResult> createUserBatch(@RequestBody Flux<User> users,
+            @RequestParam(defaultValue = "false") boolean perItemErrors) {
+        log.debug("Creating users in batch, per-item errors: {}", perItemErrors);
+        return userService.createUserBatch(users, perItemErrors);
+    }
+
     @PutMapping("/{id}")
-    public Mono<ResponseEntity<User>> updateUser(@PathVariable Long id, @RequestBody User updatedUser) {
-        log.info("Updating user with ID: {}", id);
-        return userService.updateUser(id, updatedUser)
-                .map(updated -> new ResponseEntity<>(updated, HttpStatus.OK))
+    public Mono<ResponseEntity<User>> updateUser(@PathVariable Long id, @RequestBody User updatedUser,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Updating user with ID: {}", id);
+        return userService.updateUser(id, updatedUser, ETags.expectedVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated))
+                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    @PatchMapping("/{id}")
+    public Mono<ResponseEntity<User>> patchUser(@PathVariable Long id, @RequestBody UserPatch patch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Patching user with ID: {}", id);
+        return userService.patchUser(id, patch, ETags.expectedVersion(ifMatch))
+                .map(updated -> ResponseEntity.ok().eTag(ETags.of(updated.getVersion())).body(updated))
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping("/{id}")
     public Mono<ResponseEntity<Void>> deleteUser(@PathVariable Long id) {
-        log.info("Deleting user with ID: {}", id);
+        log.debug("Deleting user with ID: {}", id);
         return userService.deleteUser(id)
-                .then(Mono.just(new ResponseEntity<Void>(HttpStatus.NO_CONTENT)))
-                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+                .map(deleted -> new ResponseEntity<Void>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
     }
 }
@@ -2,6 +2,7 @@ package app.project.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,6 +13,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
+import app.project.model.CursorPage;
+import app.project.model.Delta;
+import app.project.model.MediaSubscribers;
+import app.project.model.Subscription;
 import app.project.model.UserMedia;
 import app.project.service.UserMediaService;
 import lombok.extern.slf4j.Slf4j;
@@ -28,13 +33,43 @@ public class UserMediaController {
 
     @GetMapping
     public Flux<UserMedia> getAllUserMedia() {
-        log.info("Retrieving all user-media relationships");
+        log.debug("Retrieving all user-media relationships");
         return userMediaService.getAllUserMedia();
     }
 
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserMedia> streamAllUserMedia() {
+        log.debug("Streaming all user-media relationships");
+        return userMediaService.streamAllUserMedia();
+    }
+
+    @GetMapping(params = "since")
+    public Mono<Delta<UserMedia>> getUserMediaChangedSince(@RequestParam String since) {
+        log.debug("Retrieving user-media relationships changed since token: {}", since);
+        return userMediaService.getUserMediaChangedSince(since);
+    }
+
+    @GetMapping(params = "limit")
+    public Mono<CursorPage<UserMedia>> getUserMediaPage(@RequestParam int limit, @RequestParam(required = false) String after) {
+        log.debug("Retrieving user-media relationships page after cursor: {}", after);
+        return userMediaService.getUserMediaPage(after, limit);
+    }
+
+    @GetMapping(value = "/expanded", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Subscription> getSubscriptions(@RequestParam(required = false) String ageOrder) {
+        log.debug("Retrieving expanded user-media relationships ordered by age: {}", ageOrder);
+        return userMediaService.getSubscriptions(ageOrder);
+    }
+
+    @GetMapping(value = "/expanded/by-media", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MediaSubscribers> getSubscriptionsByMedia(@RequestParam(required = false) String ageOrder) {
+        log.debug("Retrieving expanded user-media relationships grouped by media ordered by age: {}", ageOrder);
+        return userMediaService.getSubscriptionsByMedia(ageOrder);
+    }
+
     @GetMapping("/{id}")
     public Mono<ResponseEntity<UserMedia>> getUserMediaById(@PathVariable Long id) {
-        log.info("Retrieving user-media relationship with ID: {}", id);
+        log.debug("Retrieving user-media relationship with ID: {}", id);
         return userMediaService.getUserMediaById(id)
                 .map(userMedia -> new ResponseEntity<>(userMedia, HttpStatus.OK))
                 .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
@@ -43,15 +78,14 @@ public class UserMediaController {
     @PostMapping("/link")
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<UserMedia> linkUserToMedia(@RequestParam Long userId, @RequestParam Long mediaId) {
-        log.info("Linking user ID {} to media ID {}", userId, mediaId);
+        log.debug("Linking user ID {} to media ID {}", userId, mediaId);
         return userMediaService.addUserMediaRelationship(userId, mediaId);
     }
 
     @DeleteMapping("/{id}")
     public Mono<ResponseEntity<Void>> deleteUserMedia(@PathVariable Long id) {
-        log.info("Deleting user-media relationship with ID: {}", id);
+        log.debug("Deleting user-media relationship with ID: {}", id);
         return userMediaService.deleteUserMedia(id)
-                .then(Mono.just(new ResponseEntity<Void>(HttpStatus.NO_CONTENT)))
-                .defaultIfEmpty(new ResponseEntity<>(HttpStatus.NOT_FOUND));
+                .map(deleted -> new ResponseEntity<Void>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
     }
 }
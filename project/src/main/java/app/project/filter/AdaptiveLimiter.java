@@ -0,0 +1,198 @@
+package app.project.filter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+// Concurrency limit that follows latency, after the gradient algorithm of Netflix concurrency-limits.
+// A fast and a slow moving average of request latency are compared: while they agree the limit
+// grows by about sqrt(limit) per sample, and once recent requests get slower than the long-term
+// average (queueing in the pool or the database) the limit shrinks proportionally. Requests over
+// the limit wait in a bounded FIFO queue for a bounded time and are rejected after that
+class AdaptiveLimiter {
+
+    static final class Rejected extends RuntimeException {
+
+        private Rejected() {
+            super("Concurrency limit reached", null, false, false);
+        }
+    }
+
+    private static final Rejected REJECTED = new Rejected();
+
+    // Recent latency may exceed the long-term average by this factor before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+
+    // The limit moves a little on every sample rather than once per window
+    private static final double SMOOTHING = 0.02;
+
+    // The long-term average spans roughly the last 600 requests, the short-term one the last 10
+    private static final double LONG_WEIGHT = 1.0 / 600;
+
+    private static final double SHORT_WEIGHT = 0.1;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final int maxQueue;
+
+    private final Duration queueTimeout;
+
+    private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+
+    private double limit;
+
+    private int inFlight;
+
+    private double shortRtt;
+
+    private double longRtt;
+
+    AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueue, Duration queueTimeout) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.queueTimeout = queueTimeout;
+    }
+
+    // Completes once the caller holds a slot, which it must give back with release
+    Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter;
+            synchronized (this) {
+                if (inFlight < limit) {
+                    inFlight++;
+                    waiter = null;
+                } else if (waiting.size() >= maxQueue) {
+                    sink.error(REJECTED);
+                    return;
+                } else {
+                    waiter = new Waiter(sink);
+                    waiting.add(waiter);
+                }
+            }
+            if (waiter == null) {
+                sink.success();
+                return;
+            }
+            waiter.timeout = Schedulers.parallel().schedule(() -> {
+                if (waiter.cancel()) {
+                    remove(waiter);
+                    sink.error(REJECTED);
+                }
+            }, queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            sink.onCancel(() -> {
+                if (waiter.cancel()) {
+                    remove(waiter);
+                } else if (waiter.isAdmitted()) {
+                    // Admitted concurrently with the cancel; nobody will run with the slot
+                    release(0);
+                }
+            });
+        });
+    }
+
+    // rttNanos is the latency of the finished request, or 0 when it did not complete normally
+    // and should not count as a sample
+    void release(long rttNanos) {
+        List<Waiter> admitted = null;
+        synchronized (this) {
+            inFlight--;
+            if (rttNanos > 0) {
+                update(rttNanos);
+            }
+            while (inFlight < limit && !waiting.isEmpty()) {
+                Waiter waiter = waiting.poll();
+                if (waiter.admit()) {
+                    inFlight++;
+                    if (admitted == null) {
+                        admitted = new ArrayList<>();
+                    }
+                    admitted.add(waiter);
+                }
+            }
+        }
+        // Outside the lock: completing the sink runs the rest of the request on this thread
+        if (admitted != null) {
+            admitted.forEach(Waiter::proceed);
+        }
+    }
+
+    synchronized double limit() {
+        return limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private void update(long rtt) {
+        shortRtt = shortRtt == 0 ? rtt : shortRtt * (1 - SHORT_WEIGHT) + rtt * SHORT_WEIGHT;
+        longRtt = longRtt == 0 ? rtt : longRtt * (1 - LONG_WEIGHT) + rtt * LONG_WEIGHT;
+        // After a slow period the long average lags far above the recent one; let it catch up
+        // so the limit can grow again
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        // Growth needs evidence: a route that only uses half its limit keeps it where it is
+        if (target > limit && inFlight < limit / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    private synchronized void remove(Waiter waiter) {
+        waiting.remove(waiter);
+    }
+
+    private static final class Waiter {
+
+        private static final int WAITING = 0;
+
+        private static final int ADMITTED = 1;
+
+        private static final int CANCELLED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private final MonoSink<Void> sink;
+
+        private volatile Disposable timeout;
+
+        Waiter(MonoSink<Void> sink) {
+            this.sink = sink;
+        }
+
+        boolean admit() {
+            return state.compareAndSet(WAITING, ADMITTED);
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        boolean isAdmitted() {
+            return state.get() == ADMITTED;
+        }
+
+        void proceed() {
+            Disposable pending = timeout;
+            if (pending != null) {
+                pending.dispose();
+            }
+            sink.success();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package app.project.filter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+// Caps the number of requests each route has in flight, so that a burst waits here in a short,
+// bounded queue instead of piling up on pool acquisition until everything times out. The cap is
+// an AdaptiveLimiter per route; requests that cannot get a slot in time get a 503 with Retry-After
+// straight away, which keeps latency of the admitted requests close to what the database can do
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AdmissionControlFilter implements WebFilter {
+
+    // Requests for unknown paths share one limiter rather than growing the map without bound
+    private static final int MAX_ROUTES = 256;
+
+    private static final String OTHER_ROUTE = "OTHER";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.admission.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${app.admission.min-limit:2}")
+    private int minLimit;
+
+    @Value("${app.admission.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${app.admission.queue-size:50}")
+    private int queueSize;
+
+    @Value("${app.admission.queue-timeout:500ms}")
+    private Duration queueTimeout;
+
+    @Value("${app.admission.retry-after:1s}")
+    private Duration retryAfter;
+
+    // Streams stay open for minutes and would hold a slot the whole time
+    @Value("${app.admission.exclude:/changes,/actuator,/admin/import,/admin/export}")
+    private List<String> excludedPrefixes;
+
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!enabled) {
+            return chain.filter(exchange);
+        }
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        for (String prefix : excludedPrefixes) {
+            if (path.startsWith(prefix)) {
+                return chain.filter(exchange);
+            }
+        }
+        String route = route(exchange.getRequest());
+        AdaptiveLimiter limiter = limiter(route);
+        return limiter.acquire()
+                .then(Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return chain.filter(exchange)
+                            .doFinally(signal -> limiter.release(
+                                    signal == SignalType.ON_COMPLETE ? System.nanoTime() - start : 0));
+                }))
+                .onErrorResume(AdaptiveLimiter.Rejected.class, e -> reject(exchange, route))
+                // Pool acquire timeout: the database is saturated even within the limit
+                .onErrorResume(DataAccessResourceFailureException.class, e -> exchange.getResponse().isCommitted()
+                        ? Mono.error(e)
+                        : reject(exchange, route));
+    }
+
+    private AdaptiveLimiter limiter(String route) {
+        AdaptiveLimiter limiter = limiters.get(route);
+        if (limiter != null) {
+            return limiter;
+        }
+        String key = limiters.size() < MAX_ROUTES ? route : OTHER_ROUTE;
+        return limiters.computeIfAbsent(key, this::newLimiter);
+    }
+
+    private AdaptiveLimiter newLimiter(String route) {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(initialLimit, minLimit, maxLimit, queueSize, queueTimeout);
+        Gauge.builder("http.admission.limit", limiter, AdaptiveLimiter::limit)
+                .tag("route", route)
+                .register(meterRegistry);
+        Gauge.builder("http.admission.in.flight", limiter, AdaptiveLimiter::inFlight)
+                .tag("route", route)
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, String route) {
+        Counter.builder("http.admission.rejected")
+                .tag("route", route)
+                .register(meterRegistry)
+                .increment();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        return response.setComplete();
+    }
+
+    // Handler mapping has not run yet, so the route is approximated from the path: numeric
+    // segments become {id}, which matches how the controllers map their ids
+    private static String route(ServerHttpRequest request) {
+        StringBuilder route = new StringBuilder(request.getMethod().name()).append(' ');
+        String path = request.getPath().pathWithinApplication().value();
+        int start = 0;
+        while (start < path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (end > start) {
+                route.append('/');
+                if (isNumeric(path, start, end)) {
+                    route.append("{id}");
+                } else {
+                    route.append(path, start, end);
+                }
+            }
+            start = end + 1;
+        }
+        return route.toString();
+    }
+
+    private static boolean isNumeric(String path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(path.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package app.project.filter;
+
+import java.time.Duration;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import app.project.repository.ReplicaRouting;
+import reactor.core.publisher.Mono;
+
+// Read-your-writes for clients of a replicated setup: a successful write sets a cookie holding the
+// time until which the client's reads are pinned to the primary, so they cannot miss the write
+// while the replica catches up. The window should cover the usual replication lag; 0 turns
+// stickiness off and lets every replica read go to the replica. Without a replica it does nothing
+@Component
+public class ReadYourWritesFilter implements WebFilter {
+
+    private static final String COOKIE = "read-primary-until";
+
+    private static final Set<HttpMethod> READS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+
+    @Value("${app.r2dbc.replica.url:}")
+    private String replicaUrl;
+
+    @Value("${app.r2dbc.replica.sticky-window:5s}")
+    private Duration stickyWindow;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (replicaUrl.isEmpty() || stickyWindow.isZero()) {
+            return chain.filter(exchange);
+        }
+        if (!READS.contains(exchange.getRequest().getMethod())) {
+            exchange.getResponse().beforeCommit(() -> {
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                if (status == null || status.is2xxSuccessful()) {
+                    exchange.getResponse().addCookie(ResponseCookie.from(COOKIE,
+                                    String.valueOf(System.currentTimeMillis() + stickyWindow.toMillis()))
+                            .maxAge(stickyWindow)
+                            .path("/")
+                            .httpOnly(true)
+                            .sameSite("Lax")
+                            .build());
+                }
+                return Mono.empty();
+            });
+        }
+        return pinned(exchange) ? chain.filter(exchange).contextWrite(ReplicaRouting::pinToPrimary) : chain.filter(exchange);
+    }
+
+    // Checks the time as well as relying on Max-Age, since not every client expires cookies
+    private static boolean pinned(ServerWebExchange exchange) {
+        HttpCookie cookie = exchange.getRequest().getCookies().getFirst(COOKIE);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package app.project.filter;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// One line per finished request, replacing the per-handler log lines. A sampled share of requests
+// is logged at INFO; requests slower than the threshold are always logged, at WARN. Method, route,
+// status and duration are key-value pairs, so they become separate fields in the JSON log
+@Slf4j
+@Component
+public class RequestLoggingFilter implements WebFilter {
+
+    @Value("${app.logging.requests.sample-rate:1.0}")
+    private double sampleRate;
+
+    // Comma separated route=rate pairs, e.g. /media/{id}=0.001
+    @Value("${app.logging.requests.route-sample-rates:}")
+    private String routeSampleRates;
+
+    @Value("${app.logging.requests.slow-threshold:1s}")
+    private Duration slowThreshold;
+
+    // Long-lived streams would always look slow
+    @Value("${app.logging.requests.exclude:/changes,/actuator}")
+    private List<String> excludedPrefixes;
+
+    private final Map<String, Double> routeRates = new HashMap<>();
+
+    @PostConstruct
+    public void parseRouteSampleRates() {
+        for (String entry : routeSampleRates.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator > 0) {
+                routeRates.put(entry.substring(0, separator).trim(), Double.parseDouble(entry.substring(separator + 1).trim()));
+            }
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        for (String prefix : excludedPrefixes) {
+            if (path.startsWith(prefix)) {
+                return chain.filter(exchange);
+            }
+        }
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doOnSuccess(done -> logRequest(exchange, "completed", null, System.nanoTime() - start))
+                .doOnError(error -> logRequest(exchange, "error", error, System.nanoTime() - start))
+                .doOnCancel(() -> logRequest(exchange, "cancelled", null, System.nanoTime() - start));
+    }
+
+    private void logRequest(ServerWebExchange exchange, String outcome, Throwable error, long elapsedNanos) {
+        boolean slow = elapsedNanos >= slowThreshold.toNanos();
+        String route = route(exchange);
+        if (!slow && (!log.isInfoEnabled() || !sampled(route))) {
+            return;
+        }
+        String method = exchange.getRequest().getMethod().name();
+        int statusCode = statusCode(exchange, error);
+        long durationMs = elapsedNanos / 1_000_000;
+        (slow ? log.atWarn() : log.atInfo())
+                .addKeyValue("method", method)
+                .addKeyValue("route", route)
+                .addKeyValue("path", exchange.getRequest().getPath().value())
+                .addKeyValue("status", statusCode)
+                .addKeyValue("durationMs", durationMs)
+                .addKeyValue("outcome", outcome)
+                .log("{} {} {} {}ms{}", method, route, statusCode, durationMs, slow ? " (slow)" : "");
+    }
+
+    // An error reaches this filter before the error handler has set the response status, so the
+    // status is the one the handler will send for it, unless the response had already gone out
+    private static int statusCode(ServerWebExchange exchange, Throwable error) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        if (error != null && !exchange.getResponse().isCommitted()) {
+            return error instanceof ErrorResponse response ? response.getStatusCode().value() : 500;
+        }
+        return status != null ? status.value() : 200;
+    }
+
+    private boolean sampled(String route) {
+        double rate = routeRates.getOrDefault(route, sampleRate);
+        return rate >= 1.0 || ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private static String route(ServerWebExchange exchange) {
+        PathPattern pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.getPatternString() : "UNMATCHED";
+    }
+}
@@ -0,0 +1,61 @@
+package app.project.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchResult {
+
+    private final Long index; // position of the item in the request body; null on the closing line
+
+    private final Long id;
+
+    private final String error;
+
+    private final Boolean committed; // set only on the closing line of an atomic batch
+
+    private final Long count;
+
+    private BatchResult(Long index, Long id, String error, Boolean committed, Long count) {
+        this.index = index;
+        this.id = id;
+        this.error = error;
+        this.committed = committed;
+        this.count = count;
+    }
+
+    public static BatchResult created(long index, Long id) {
+        return new BatchResult(index, id, null, null, null);
+    }
+
+    public static BatchResult failed(long index, String error) {
+        return new BatchResult(index, null, error, null, null);
+    }
+
+    public static BatchResult committed(long count) {
+        return new BatchResult(null, null, null, true, count);
+    }
+
+    public static BatchResult rolledBack(String error) {
+        return new BatchResult(null, null, error, false, null);
+    }
+
+    public Long getIndex() {
+        return index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public Boolean getCommitted() {
+        return committed;
+    }
+
+    public Long getCount() {
+        return count;
+    }
+}
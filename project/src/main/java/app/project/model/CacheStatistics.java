@@ -0,0 +1,42 @@
+package app.project.model;
+
+public class CacheStatistics {
+
+    private final String name;
+
+    private final long size;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    public CacheStatistics(String name, long size, long hits, long misses, long evictions) {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
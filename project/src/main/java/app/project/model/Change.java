@@ -0,0 +1,103 @@
+package app.project.model;
+
+import java.time.OffsetDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+@Table("change_log")
+public class Change {
+
+    public static final String MEDIA = "media";
+
+    public static final String USER = "user";
+
+    public static final String USER_MEDIA = "user-media";
+
+    @Id
+    private Long id;
+
+    @Column("txid")
+    private long txid; // the writing transaction; see ChangeCursor
+
+    @Column("entity")
+    private String entity; // MEDIA, USER or USER_MEDIA
+
+    @Column("entity_id")
+    private Long entityId;
+
+    @Column("operation")
+    private String operation; // "INSERT", "UPDATE" or "DELETE"
+
+    @Column("payload")
+    private String payload; // the entity as JSON, null for deletes
+
+    @Column("changed_at")
+    private OffsetDateTime changedAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    @JsonIgnore
+    public long getTxid() {
+        return txid;
+    }
+
+    public void setTxid(long txid) {
+        this.txid = txid;
+    }
+
+    public ChangeCursor cursor() {
+        return new ChangeCursor(txid, id);
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(Long entityId) {
+        this.entityId = entityId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    @JsonRawValue
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public OffsetDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(OffsetDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+}
@@ -0,0 +1,42 @@
+package app.project.model;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// Position in the change feed, which runs in (txid, id) order; see V11__change_log_commit_order.sql.
+// Written as txid-id, the SSE event id clients resume from
+public record ChangeCursor(long txid, long id) implements Comparable<ChangeCursor> {
+
+    // Just before every change of the transactions from horizon on
+    public static ChangeCursor before(long horizon) {
+        return new ChangeCursor(horizon - 1, Long.MAX_VALUE);
+    }
+
+    // A plain number is an event id from before txid was logged, and so a position among the
+    // rows that have txid 0. Returns null for no value
+    public static ChangeCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            int separator = value.indexOf('-');
+            return separator < 0
+                    ? new ChangeCursor(0, Long.parseLong(value.trim()))
+                    : new ChangeCursor(Long.parseLong(value.substring(0, separator).trim()),
+                            Long.parseLong(value.substring(separator + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid change position: " + value);
+        }
+    }
+
+    @Override
+    public int compareTo(ChangeCursor other) {
+        int byTransaction = Long.compare(txid, other.txid);
+        return byTransaction != 0 ? byTransaction : Long.compare(id, other.id);
+    }
+
+    @Override
+    public String toString() {
+        return txid + "-" + id;
+    }
+}
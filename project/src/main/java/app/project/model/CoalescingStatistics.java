@@ -0,0 +1,28 @@
+package app.project.model;
+
+public class CoalescingStatistics {
+
+    private final String name;
+
+    private final int inFlight;
+
+    private final long deduplicated; // requests that joined a query already in flight
+
+    public CoalescingStatistics(String name, int inFlight, long deduplicated) {
+        this.name = name;
+        this.inFlight = inFlight;
+        this.deduplicated = deduplicated;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public long getDeduplicated() {
+        return deduplicated;
+    }
+}
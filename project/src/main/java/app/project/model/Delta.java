@@ -0,0 +1,72 @@
+package app.project.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class Delta<T> {
+
+    private final List<T> items; // created or updated since the token
+
+    private final List<Long> deleted; // ids deleted since the token
+
+    private final String token; // pass as ?since= on the next request
+
+    private final boolean more; // a page limit was reached; fetch again with token straight away
+
+    public Delta(List<T> items, List<Long> deleted, String token, boolean more) {
+        this.items = items;
+        this.deleted = deleted;
+        this.token = token;
+        this.more = more;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public static String encodeToken(Token token) {
+        String value = token.position() + "|" + token.issuedAt() + (token.copyAfter() != null ? "|" + token.copyAfter() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // An empty token asks for everything; returns null in that case
+    public static Token decodeToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException(token);
+            }
+            return new Token(ChangeCursor.parse(parts[0]), OffsetDateTime.parse(parts[1]),
+                    parts.length == 3 ? Long.valueOf(parts[2]) : null);
+        } catch (IllegalArgumentException | DateTimeParseException | ResponseStatusException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid since token: " + token);
+        }
+    }
+
+    // position is the last change_log entry the client has, as of issuedAt. While a full fetch is
+    // being paged through, copyAfter is the last id sent, and position is where the changes made
+    // during the copy start
+    public record Token(ChangeCursor position, OffsetDateTime issuedAt, Long copyAfter) {
+    }
+}
@@ -0,0 +1,71 @@
+package app.project.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImportProgress {
+
+    private final String entity;
+
+    private final long bytes; // request body read so far
+
+    private final long lines; // CSV lines, or NDJSON items, read so far
+
+    private final long elapsedMs;
+
+    private final boolean done;
+
+    private final Long rows; // rows COPY reported once it has committed
+
+    private final String error;
+
+    private ImportProgress(String entity, long bytes, long lines, long elapsedMs, boolean done, Long rows, String error) {
+        this.entity = entity;
+        this.bytes = bytes;
+        this.lines = lines;
+        this.elapsedMs = elapsedMs;
+        this.done = done;
+        this.rows = rows;
+        this.error = error;
+    }
+
+    public static ImportProgress running(String entity, long bytes, long lines, long elapsedMs) {
+        return new ImportProgress(entity, bytes, lines, elapsedMs, false, null, null);
+    }
+
+    public static ImportProgress completed(String entity, long bytes, long lines, long elapsedMs, long rows) {
+        return new ImportProgress(entity, bytes, lines, elapsedMs, true, rows, null);
+    }
+
+    public static ImportProgress failed(String entity, long bytes, long lines, long elapsedMs, String error) {
+        return new ImportProgress(entity, bytes, lines, elapsedMs, true, null, error);
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public Long getRows() {
+        return rows;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
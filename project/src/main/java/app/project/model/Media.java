@@ -1,8 +1,11 @@
 package app.project.model;
 
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -19,11 +22,23 @@ public class Media {
     private LocalDate releaseDate;
 
     @Column("average_rating") 
-    private double averageRating;
+    private Double averageRating;
 
     @Column("type") 
     private String type; // "Movie" or "TV Show"
 
+    @Version
+    @Column("version")
+    private Long version;
+
+    @ReadOnlyProperty
+    @Column("created_at")
+    private OffsetDateTime createdAt;
+
+    @ReadOnlyProperty
+    @Column("updated_at")
+    private OffsetDateTime updatedAt;
+
     public Long getId() {
         return id;
     }
@@ -48,11 +63,11 @@ public class Media {
         this.releaseDate = releaseDate;
     }
 
-    public double getAverageRating() {
+    public Double getAverageRating() {
         return averageRating;
     }
 
-    public void setAverageRating(double averageRating) {
+    public void setAverageRating(Double averageRating) {
         this.averageRating = averageRating;
     }
 
@@ -63,4 +78,28 @@ public class Media {
     public void setType(String type) {
         this.type = type;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(OffsetDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
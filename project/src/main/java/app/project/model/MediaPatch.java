@@ -0,0 +1,62 @@
+package app.project.model;
+
+import java.time.LocalDate;
+
+// Partial update of a media item; fields left out are not written. averageRating and type are
+// nullable, so an explicit null clears them; null for title or releaseDate is treated as left out
+public class MediaPatch {
+
+    private String title;
+
+    private LocalDate releaseDate;
+
+    private Double averageRating;
+
+    private String type;
+
+    private boolean averageRatingSet;
+
+    private boolean typeSet;
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public LocalDate getReleaseDate() {
+        return releaseDate;
+    }
+
+    public void setReleaseDate(LocalDate releaseDate) {
+        this.releaseDate = releaseDate;
+    }
+
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+        this.averageRatingSet = true;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+        this.typeSet = true;
+    }
+
+    public boolean clearsAverageRating() {
+        return averageRatingSet && averageRating == null;
+    }
+
+    public boolean clearsType() {
+        return typeSet && type == null;
+    }
+}
@@ -0,0 +1,76 @@
+package app.project.model;
+
+import java.time.LocalDate;
+
+public class MediaStats {
+
+    private Long count;
+
+    private Long highRatedCount; // average_rating > 8
+
+    private Double averageRating;
+
+    private Double ratingStandardDeviation;
+
+    private String oldestTitle;
+
+    private LocalDate oldestReleaseDate;
+
+    private Long eightiesCount;
+
+    public Long getCount() {
+        return count;
+    }
+
+    public void setCount(Long count) {
+        this.count = count;
+    }
+
+    public Long getHighRatedCount() {
+        return highRatedCount;
+    }
+
+    public void setHighRatedCount(Long highRatedCount) {
+        this.highRatedCount = highRatedCount;
+    }
+
+    public Double getAverageRating() {
+        return averageRating;
+    }
+
+    public void setAverageRating(Double averageRating) {
+        this.averageRating = averageRating;
+    }
+
+    public Double getRatingStandardDeviation() {
+        return ratingStandardDeviation;
+    }
+
+    public void setRatingStandardDeviation(Double ratingStandardDeviation) {
+        this.ratingStandardDeviation = ratingStandardDeviation;
+    }
+
+    public String getOldestTitle() {
+        return oldestTitle;
+    }
+
+    public void setOldestTitle(String oldestTitle) {
+        this.oldestTitle = oldestTitle;
+    }
+
+    public LocalDate getOldestReleaseDate() {
+        return oldestReleaseDate;
+    }
+
+    public void setOldestReleaseDate(LocalDate oldestReleaseDate) {
+        this.oldestReleaseDate = oldestReleaseDate;
+    }
+
+    public Long getEightiesCount() {
+        return eightiesCount;
+    }
+
+    public void setEightiesCount(Long eightiesCount) {
+        this.eightiesCount = eightiesCount;
+    }
+}
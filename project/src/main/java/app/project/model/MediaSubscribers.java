@@ -0,0 +1,30 @@
+package app.project.model;
+
+import java.util.List;
+
+public class MediaSubscribers {
+
+    private final Long mediaId;
+
+    private final String mediaTitle;
+
+    private final List<User> users;
+
+    public MediaSubscribers(Long mediaId, String mediaTitle, List<User> users) {
+        this.mediaId = mediaId;
+        this.mediaTitle = mediaTitle;
+        this.users = users;
+    }
+
+    public Long getMediaId() {
+        return mediaId;
+    }
+
+    public String getMediaTitle() {
+        return mediaTitle;
+    }
+
+    public List<User> getUsers() {
+        return users;
+    }
+}
@@ -0,0 +1,31 @@
+package app.project.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MultiGetEntry<T> {
+
+    private final Long id;
+
+    private final boolean found;
+
+    private final T item;
+
+    public MultiGetEntry(Long id, T item) {
+        this.id = id;
+        this.found = item != null;
+        this.item = item;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public T getItem() {
+        return item;
+    }
+}
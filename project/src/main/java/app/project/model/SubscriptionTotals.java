@@ -0,0 +1,48 @@
+package app.project.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("subscription_totals")
+public class SubscriptionTotals {
+
+    public static final int STRIPES = 16; // rows 1 to STRIPES, see V9__striped_subscription_totals.sql
+
+    @Id
+    private Integer id;
+
+    @Column("media_count")
+    private long mediaCount;
+
+    @Column("subscription_count")
+    private long subscriptionCount;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public long getMediaCount() {
+        return mediaCount;
+    }
+
+    public void setMediaCount(long mediaCount) {
+        this.mediaCount = mediaCount;
+    }
+
+    public long getSubscriptionCount() {
+        return subscriptionCount;
+    }
+
+    public void setSubscriptionCount(long subscriptionCount) {
+        this.subscriptionCount = subscriptionCount;
+    }
+
+    public double getAverageSubscribersPerMedia() {
+        return mediaCount == 0 ? 0 : (double) subscriptionCount / mediaCount;
+    }
+}
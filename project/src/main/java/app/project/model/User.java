@@ -1,6 +1,10 @@
 package app.project.model;
 
+import java.time.OffsetDateTime;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -19,6 +23,18 @@ public class User {
     @Column("gender") 
     private String gender;
 
+    @Version
+    @Column("version")
+    private Long version;
+
+    @ReadOnlyProperty
+    @Column("created_at")
+    private OffsetDateTime createdAt;
+
+    @ReadOnlyProperty
+    @Column("updated_at")
+    private OffsetDateTime updatedAt;
+
     public Long getId() {
         return id;
     }
@@ -50,4 +66,28 @@ public class User {
     public void setGender(String gender) {
         this.gender = gender;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(OffsetDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
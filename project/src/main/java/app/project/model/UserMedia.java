@@ -1,6 +1,9 @@
 package app.project.model;
 
+import java.time.OffsetDateTime;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -16,6 +19,14 @@ public class UserMedia {
     @Column("media_id") 
     private Long mediaId;
 
+    @ReadOnlyProperty
+    @Column("created_at")
+    private OffsetDateTime createdAt;
+
+    @ReadOnlyProperty
+    @Column("updated_at")
+    private OffsetDateTime updatedAt;
+
     public UserMedia() {}
 
     public UserMedia(Long userId, Long mediaId) {
@@ -46,4 +57,20 @@ public class UserMedia {
     public void setMediaId(Long mediaId) {
         this.mediaId = mediaId;
     }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(OffsetDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
 }
@@ -0,0 +1,43 @@
+package app.project.model;
+
+// Partial update of a user; fields left out are not written. gender is nullable, so an explicit
+// "gender": null clears it; null for name or age is treated as left out
+public class UserPatch {
+
+    private String name;
+
+    private Integer age;
+
+    private String gender;
+
+    private boolean genderSet;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getAge() {
+        return age;
+    }
+
+    public void setAge(Integer age) {
+        this.age = age;
+    }
+
+    public String getGender() {
+        return gender;
+    }
+
+    public void setGender(String gender) {
+        this.gender = gender;
+        this.genderSet = true;
+    }
+
+    public boolean clearsGender() {
+        return genderSet && gender == null;
+    }
+}
@@ -0,0 +1,145 @@
+package app.project.repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.r2dbc.mapping.OutboundRow;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.sql.SqlIdentifier;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import app.project.model.BatchResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+@Component
+public class BatchInserter {
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    // Keep chunkSize * columns below the 65535 bind parameter limit of the Postgres protocol
+    @Value("${app.batch.chunk-size:500}")
+    private int chunkSize;
+
+    // Atomic mode runs every chunk in one transaction, so the first failure rolls back the whole body.
+    // Its ids are streamed as the chunks are inserted, before that transaction ends, so the last line
+    // says whether they were committed: committed with the row count, or rolled back with the error.
+    // Per-item mode commits chunk by chunk and, when a chunk fails, retries its rows one at a time
+    // so that only the offending rows are reported as failed; a chunk's ids follow its commit.
+    public <T> Flux<BatchResult> insertAll(Class<T> type, Flux<T> rows, boolean perItemErrors) {
+        return insertAll(type, rows, perItemErrors, inserted -> Mono.empty());
+    }
+
+    // afterChunk receives the rows each statement inserted, with their generated ids set, and runs
+    // in the same transaction
+    public <T> Flux<BatchResult> insertAll(Class<T> type, Flux<T> rows, boolean perItemErrors,
+            Function<List<T>, Mono<?>> afterChunk) {
+        Flux<List<Tuple2<Long, T>>> chunks = rows.index().buffer(chunkSize);
+        if (!perItemErrors) {
+            return Flux.defer(() -> {
+                AtomicLong created = new AtomicLong();
+                return transactionalOperator.transactional(chunks.concatMap(chunk -> insertChunk(type, chunk, afterChunk)))
+                        .doOnNext(result -> created.incrementAndGet())
+                        .concatWith(Mono.fromSupplier(() -> BatchResult.committed(created.get())))
+                        .onErrorResume(error -> Mono.just(BatchResult.rolledBack(error.getMessage())));
+            });
+        }
+        return chunks.concatMap(chunk -> committed(insertChunk(type, chunk, afterChunk))
+                .onErrorResume(chunkError -> Flux.fromIterable(chunk)
+                        .concatMap(item -> committed(insertChunk(type, List.of(item), afterChunk))
+                                .onErrorResume(itemError -> Mono.just(BatchResult.failed(item.getT1(), itemError.getMessage()))))));
+    }
+
+    // Holds a chunk's results back until its transaction has committed
+    private Flux<BatchResult> committed(Flux<BatchResult> chunk) {
+        return transactionalOperator.transactional(chunk.collectList()).flatMapIterable(results -> results);
+    }
+
+    private <T> Flux<BatchResult> insertChunk(Class<T> type, List<Tuple2<Long, T>> chunk,
+            Function<List<T>, Mono<?>> afterChunk) {
+        R2dbcConverter converter = template.getConverter();
+        RelationalPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(type);
+        SqlIdentifier idColumn = entity.getRequiredIdProperty().getColumnName();
+        SqlIdentifier versionColumn = entity.hasVersionProperty() ? entity.getRequiredVersionProperty().getColumnName() : null;
+
+        List<OutboundRow> values = new ArrayList<>(chunk.size());
+        for (Tuple2<Long, T> item : chunk) {
+            OutboundRow row = new OutboundRow();
+            converter.write(item.getT2(), row);
+            row.remove(idColumn);
+            if (versionColumn != null) {
+                // New rows start at version 0, as they do through save()
+                row.put(versionColumn, Parameter.from(0L));
+            }
+            values.add(row);
+        }
+        List<SqlIdentifier> columns = new ArrayList<>(values.get(0).keySet());
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(toSql(entity.getTableName()))
+                .append(columns.stream().map(this::toSql).collect(Collectors.joining(", ", " (", ") VALUES ")));
+        Map<String, Parameter> bindings = new LinkedHashMap<>();
+        for (int r = 0; r < values.size(); r++) {
+            sql.append(r == 0 ? "(" : ", (");
+            for (int c = 0; c < columns.size(); c++) {
+                String name = "p" + r + "_" + c;
+                sql.append(c == 0 ? ":" : ", :").append(name);
+                bindings.put(name, values.get(r).get(columns.get(c)));
+            }
+            sql.append(")");
+        }
+        sql.append(" RETURNING ").append(toSql(idColumn));
+
+        DatabaseClient.GenericExecuteSpec spec = template.getDatabaseClient().sql(sql.toString());
+        for (Map.Entry<String, Parameter> binding : bindings.entrySet()) {
+            spec = spec.bind(binding.getKey(), binding.getValue());
+        }
+        // Postgres returns the RETURNING rows in VALUES order; collecting first means a failing
+        // statement never emits a partial set of ids
+        return spec.map(row -> row.get(0, Long.class))
+                .all()
+                .collectList()
+                .flatMap(ids -> afterChunk.apply(inserted(entity, chunk, ids)).thenReturn(ids))
+                .flatMapIterable(ids -> {
+                    List<BatchResult> results = new ArrayList<>(ids.size());
+                    for (int i = 0; i < ids.size(); i++) {
+                        results.add(BatchResult.created(chunk.get(i).getT1(), ids.get(i)));
+                    }
+                    return results;
+                });
+    }
+
+    private <T> List<T> inserted(RelationalPersistentEntity<?> entity, List<Tuple2<Long, T>> chunk, List<Long> ids) {
+        List<T> inserted = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            PersistentPropertyAccessor<T> accessor = entity.getPropertyAccessor(chunk.get(i).getT2());
+            accessor.setProperty(entity.getRequiredIdProperty(), ids.get(i));
+            if (entity.hasVersionProperty()) {
+                accessor.setProperty(entity.getRequiredVersionProperty(), 0L);
+            }
+            inserted.add(accessor.getBean());
+        }
+        return inserted;
+    }
+
+    private String toSql(SqlIdentifier identifier) {
+        return template.getDataAccessStrategy().toSql(identifier);
+    }
+}
@@ -0,0 +1,65 @@
+package app.project.repository;
+
+import java.time.OffsetDateTime;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import app.project.model.Change;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ChangeLogRepository extends ReactiveCrudRepository<Change, Long> {
+
+    // Logs one change per id/payload pair and queues one NOTIFY for the statement, which wakes
+    // ChangeFeed up to read the rows; Postgres only delivers it if the surrounding transaction commits
+    @Query("""
+            WITH c AS (
+                INSERT INTO change_log (entity, entity_id, operation, payload)
+                SELECT :entity, u.entity_id, :operation, CAST(u.payload AS jsonb)
+                FROM unnest(CAST(:entityIds AS bigint[]), CAST(:payloads AS text[])) WITH ORDINALITY AS u(entity_id, payload, ord)
+                ORDER BY u.ord
+                RETURNING id
+            )
+            SELECT CAST(pg_notify(:channel, CAST(count(*) AS text)) AS text) FROM c
+            """)
+    Flux<String> append(String channel, String entity, String operation, Long[] entityIds, String[] payloads);
+
+    // Changes after the given position, in (txid, id) order, from transactions older than the oldest
+    // one still running in this statement's snapshot. Those have all ended, so nothing can commit
+    // before the last row returned any more, and a reader that resumes from it misses nothing
+    @Query("""
+            SELECT id, txid, entity, entity_id, operation, CAST(payload AS text) AS payload, changed_at
+            FROM change_log
+            WHERE (txid, id) > (:txid, :id)
+              AND txid < CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint)
+            ORDER BY txid, id
+            """)
+    Flux<Change> findSettledAfter(long txid, long id);
+
+    // The txid findSettledAfter currently stops at
+    @Query("SELECT CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint)")
+    Mono<Long> findHorizon();
+
+    // findSettledAfter for one entity, without the payloads, up to limit rows
+    @Query("""
+            SELECT id, txid, entity, entity_id, operation, CAST(NULL AS text) AS payload, changed_at
+            FROM change_log
+            WHERE entity = :entity
+              AND (txid, id) > (:txid, :id)
+              AND txid < CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS text) AS bigint)
+            ORDER BY txid, id
+            LIMIT :limit
+            """)
+    Flux<Change> findSettledAfter(String entity, long txid, long id, int limit);
+
+    @Query("SELECT now()")
+    Mono<OffsetDateTime> currentTimestamp();
+
+    @Modifying
+    @Query("DELETE FROM change_log WHERE changed_at < :cutoff")
+    Mono<Integer> deleteOlderThan(OffsetDateTime cutoff);
+}
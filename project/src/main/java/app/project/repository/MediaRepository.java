@@ -1,10 +1,132 @@
 package app.project.repository;
 
+import java.time.LocalDate;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 import app.project.model.Media;
+import app.project.model.MediaStats;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface MediaRepository extends ReactiveCrudRepository<Media, Long> {
+
+    @Query("SELECT * FROM media WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Media> findPageAfter(Long afterId, int limit);
+
+    @Query("SELECT * FROM media WHERE id = ANY(:ids)")
+    Flux<Media> findAllByIdAny(Long[] ids);
+
+    Flux<Media> findByReleaseDateBetween(LocalDate from, LocalDate to);
+
+    Flux<Media> findByAverageRatingGreaterThan(Double rating);
+
+    Flux<Media> findByReleaseDateBetweenAndAverageRatingGreaterThan(LocalDate from, LocalDate to, Double rating);
+
+    @Query("SELECT m.* FROM media m JOIN user_media um ON um.media_id = m.id WHERE um.user_id = :userId ORDER BY m.id")
+    Flux<Media> findSubscribedByUserId(Long userId);
+
+    // Ranked like TitleIndex: whole title, title prefix, word prefix, anywhere; then shorter titles.
+    // pattern is query with LIKE wildcards escaped
+    @Query("""
+            SELECT * FROM media
+            WHERE lower(title) LIKE '%' || :pattern || '%'
+            ORDER BY CASE WHEN lower(title) = :query THEN 0
+                          WHEN lower(title) LIKE :pattern || '%' THEN 1
+                          WHEN lower(title) LIKE '% ' || :pattern || '%' THEN 2
+                          ELSE 3 END,
+                     length(title), id
+            LIMIT :limit
+            """)
+    Flux<Media> searchByTitle(String query, String pattern, int limit);
+
+    // The oldest title is a separate LIMIT 1 lookup rather than an aggregate, so it does not build
+    // an array of every matching title
+    @Query("""
+            SELECT count(*) AS count,
+                   count(*) FILTER (WHERE average_rating > 8) AS high_rated_count,
+                   avg(average_rating)::float8 AS average_rating,
+                   stddev_pop(average_rating)::float8 AS rating_standard_deviation,
+                   (SELECT title FROM media
+                    WHERE (:type IS NULL OR type = :type)
+                      AND (:from IS NULL OR release_date >= :from)
+                      AND (:to IS NULL OR release_date <= :to)
+                    ORDER BY release_date, id
+                    LIMIT 1) AS oldest_title,
+                   min(release_date) AS oldest_release_date,
+                   count(*) FILTER (WHERE release_date >= DATE '1980-01-01' AND release_date < DATE '1990-01-01') AS eighties_count
+            FROM media
+            WHERE (:type IS NULL OR type = :type)
+              AND (:from IS NULL OR release_date >= :from)
+              AND (:to IS NULL OR release_date <= :to)
+            """)
+    Mono<MediaStats> computeStats(String type, LocalDate from, LocalDate to);
+
+    @Query("""
+            UPDATE media
+            SET title = :title, release_date = :releaseDate, average_rating = :averageRating, type = :type,
+                version = version + 1, updated_at = now()
+            WHERE id = :id AND (:expectedVersion IS NULL OR version = :expectedVersion)
+            RETURNING *
+            """)
+    Mono<Media> updateById(Long id, String title, LocalDate releaseDate, Double averageRating, String type,
+            Long expectedVersion);
+
+    // Null field arguments keep the stored value; the clear flags write NULL instead
+    @Query("""
+            UPDATE media
+            SET title = COALESCE(:title, title),
+                release_date = COALESCE(:releaseDate, release_date),
+                average_rating = CASE WHEN :clearAverageRating THEN NULL ELSE COALESCE(:averageRating, average_rating) END,
+                type = CASE WHEN :clearType THEN NULL ELSE COALESCE(:type, type) END,
+                version = version + 1,
+                updated_at = now()
+            WHERE id = :id AND (:expectedVersion IS NULL OR version = :expectedVersion)
+            RETURNING *
+            """)
+    Mono<Media> patchById(Long id, String title, LocalDate releaseDate, Double averageRating, String type,
+            boolean clearAverageRating, boolean clearType, Long expectedVersion);
+
+    // Bumped by a trigger on every statement that changes the table; used as the collection ETag
+    @Query("SELECT sum(version)::text FROM collection_versions WHERE collection = 'media'")
+    Mono<String> findCollectionVersion();
+
+    @Modifying
+    @Query("DELETE FROM media WHERE id = :id")
+    Mono<Integer> removeById(Long id);
+
+    @Query("SELECT subscriber_count FROM media WHERE id = :id")
+    Mono<Long> findSubscriberCount(Long id);
+
+    @Modifying
+    @Query("UPDATE media SET subscriber_count = subscriber_count + :delta WHERE id = :id")
+    Mono<Integer> adjustSubscriberCount(Long id, long delta);
+
+    // ids[i] is adjusted by deltas[i]; ids must be distinct
+    @Modifying
+    @Query("UPDATE media m SET subscriber_count = m.subscriber_count + d.delta FROM unnest(:ids, :deltas) AS d(id, delta) WHERE m.id = d.id")
+    Mono<Integer> adjustSubscriberCounts(Long[] ids, Long[] deltas);
+
+    // Last id of the next reconcile batch of up to limit media items after afterId; empty past the end
+    @Query("SELECT max(id) FROM (SELECT id FROM media WHERE id > :afterId ORDER BY id LIMIT :limit) batch HAVING count(*) > 0")
+    Mono<Long> findBatchEnd(Long afterId, int limit);
+
+    // Counter and links are read in one snapshot, in which every committed link write has changed
+    // both, so the difference is the drift alone; it is added rather than assigned, so a writer that
+    // has not committed yet still applies its own delta on top
+    @Modifying
+    @Query("""
+            UPDATE media m
+            SET subscriber_count = m.subscriber_count + actual.drift
+            FROM (SELECT src.id, count(um.id) - src.subscriber_count AS drift
+                  FROM media src LEFT JOIN user_media um ON um.media_id = src.id
+                  WHERE src.id > :afterId AND src.id <= :lastId
+                  GROUP BY src.id, src.subscriber_count) actual
+            WHERE m.id = actual.id AND actual.drift <> 0
+            """)
+    Mono<Integer> reconcileSubscriberCounts(Long afterId, Long lastId);
 }
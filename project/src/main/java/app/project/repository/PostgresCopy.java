@@ -0,0 +1,38 @@
+package app.project.repository;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+
+import io.netty.buffer.ByteBuf;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.publisher.Mono;
+
+@Component
+public class PostgresCopy {
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    // Streams stdin into a COPY ... FROM STDIN statement on a pooled connection and completes with
+    // the number of rows copied. The driver releases each buffer once it has been written, and pulls
+    // the next one only as the socket drains, so the body is never held in memory. COPY is a single
+    // statement: a bad row, or an error from stdin, rolls back everything copied so far
+    public Mono<Long> copyIn(String sql, Publisher<ByteBuf> stdin) {
+        return template.getDatabaseClient().inConnection(connection -> postgres(connection).copyIn(sql, stdin));
+    }
+
+    private static PostgresqlConnection postgres(Connection connection) {
+        Object candidate = connection;
+        while (!(candidate instanceof PostgresqlConnection) && candidate instanceof Wrapped<?> wrapped) {
+            candidate = wrapped.unwrap();
+        }
+        if (candidate instanceof PostgresqlConnection postgres) {
+            return postgres;
+        }
+        throw new IllegalStateException("COPY needs a Postgres connection, got " + connection.getClass().getName());
+    }
+}
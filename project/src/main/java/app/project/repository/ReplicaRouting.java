@@ -0,0 +1,42 @@
+package app.project.repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+// Reactor context entries that pick the pool a query runs on when a read replica is configured.
+// Reads wrapped in replica() may be served by the replica, and so can be up to the replication lag
+// behind; everything else runs on the primary, and so does every transaction, since its connection
+// is bound before any of its queries run. Requests pinned with pinToPrimary, as the read-your-writes
+// filter does for a client that has just written, keep all of their reads on the primary.
+// Without a replica nothing reads these entries and every query uses the one pool
+public final class ReplicaRouting {
+
+    public static final String PRIMARY = "primary";
+
+    public static final String REPLICA = "replica";
+
+    private static final String TARGET = ReplicaRouting.class.getName() + ".target";
+
+    private static final String PINNED = ReplicaRouting.class.getName() + ".pinned";
+
+    private ReplicaRouting() {
+    }
+
+    public static <T> Flux<T> replica(Flux<T> reads) {
+        return reads.contextWrite(Context.of(TARGET, REPLICA));
+    }
+
+    public static <T> Mono<T> replica(Mono<T> reads) {
+        return reads.contextWrite(Context.of(TARGET, REPLICA));
+    }
+
+    public static Context pinToPrimary(Context context) {
+        return context.put(PINNED, true);
+    }
+
+    public static String target(ContextView context) {
+        return context.hasKey(PINNED) ? PRIMARY : context.getOrDefault(TARGET, PRIMARY);
+    }
+}
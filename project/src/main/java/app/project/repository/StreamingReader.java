@@ -0,0 +1,37 @@
+package app.project.repository;
+
+import java.util.function.BiFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Component;
+
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import reactor.core.publisher.Flux;
+
+@Component
+public class StreamingReader {
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Value("${app.streaming.fetch-size:500}")
+    private int fetchSize;
+
+    // With a fetch size the driver reads through a portal, pulling the next batch of rows only
+    // when downstream demand asks for it, so a slow socket holds back the query instead of the heap
+    public <T> Flux<T> stream(Class<T> type, String sql) {
+        R2dbcConverter converter = template.getConverter();
+        return stream(sql, (row, metadata) -> converter.read(type, row, metadata));
+    }
+
+    public <T> Flux<T> stream(String sql, BiFunction<Row, RowMetadata, T> mapper) {
+        return template.getDatabaseClient().sql(sql)
+                .filter(statement -> statement.fetchSize(fetchSize))
+                .map(mapper)
+                .all();
+    }
+}
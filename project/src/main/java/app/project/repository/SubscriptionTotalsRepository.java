@@ -0,0 +1,42 @@
+package app.project.repository;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import app.project.model.SubscriptionTotals;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface SubscriptionTotalsRepository extends ReactiveCrudRepository<SubscriptionTotals, Integer> {
+
+    @Query("SELECT 1 AS id, sum(media_count)::bigint AS media_count, sum(subscription_count)::bigint AS subscription_count FROM subscription_totals")
+    Mono<SubscriptionTotals> findTotals();
+
+    // Spreads writers over the stripes, so they rarely wait on each other's row lock
+    default Mono<Integer> adjust(long mediaDelta, long subscriptionDelta) {
+        return adjustStripe(ThreadLocalRandom.current().nextInt(SubscriptionTotals.STRIPES) + 1, mediaDelta, subscriptionDelta);
+    }
+
+    @Modifying
+    @Query("UPDATE subscription_totals SET media_count = media_count + :mediaDelta, subscription_count = subscription_count + :subscriptionDelta WHERE id = :stripe")
+    Mono<Integer> adjustStripe(int stripe, long mediaDelta, long subscriptionDelta);
+
+    // The counts and the stripes are read in one snapshot, where every committed write has updated
+    // both, so their difference is the drift alone; adding it, rather than overwriting the totals,
+    // keeps the adjustments of writers still in flight
+    @Modifying
+    @Query("""
+            UPDATE subscription_totals t
+            SET media_count = t.media_count + d.media_drift,
+                subscription_count = t.subscription_count + d.subscription_drift
+            FROM (SELECT (SELECT count(*) FROM media) - sum(media_count) AS media_drift,
+                         (SELECT count(*) FROM user_media) - sum(subscription_count) AS subscription_drift
+                  FROM subscription_totals) d
+            WHERE t.id = 1 AND (d.media_drift <> 0 OR d.subscription_drift <> 0)
+            """)
+    Mono<Integer> reconcile();
+}
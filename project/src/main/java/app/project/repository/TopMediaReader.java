@@ -0,0 +1,50 @@
+package app.project.repository;
+
+import static org.springframework.data.relational.core.query.Criteria.where;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import app.project.model.Media;
+import reactor.core.publisher.Flux;
+
+@Component
+public class TopMediaReader {
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    // Media ordered by property, nulls last in either direction, then by id. A page starts after the
+    // item (afterValue, afterId) of the previous one, so it is a range scan however deep it goes;
+    // afterId is null on the first page and afterValue is null once the nulls have been reached
+    public Flux<Media> findPage(String property, Sort.Direction direction, Object afterValue, Long afterId,
+            String type, LocalDate from, LocalDate to, int limit) {
+        Criteria criteria = where("releaseDate").between(from, to);
+        if (type != null) {
+            criteria = criteria.and("type").is(type);
+        }
+        if (afterId != null) {
+            criteria = criteria.and(after(property, direction, afterValue, afterId));
+        }
+        Sort sort = Sort.by(new Sort.Order(direction, property).nullsLast()).and(Sort.by("id"));
+        return template.select(Media.class)
+                .matching(Query.query(criteria).sort(sort).limit(limit))
+                .all();
+    }
+
+    private static Criteria after(String property, Sort.Direction direction, Object value, Long id) {
+        if (value == null) {
+            return where(property).isNull().and("id").greaterThan(id);
+        }
+        Criteria beyond = direction.isAscending() ? where(property).greaterThan(value) : where(property).lessThan(value);
+        return beyond
+                .or(where(property).is(value).and("id").greaterThan(id))
+                .or(where(property).isNull());
+    }
+}
@@ -1,8 +1,50 @@
 package app.project.repository;
 
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 
 import app.project.model.UserMedia;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface UserMediaRepository extends ReactiveCrudRepository<UserMedia, Long> {
+
+    @Query("SELECT * FROM user_media WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<UserMedia> findPageAfter(Long afterId, int limit);
+
+    @Query("SELECT * FROM user_media WHERE id = ANY(:ids)")
+    Flux<UserMedia> findAllByIdAny(Long[] ids);
+
+    // Empty when the link exists already or the user or media does not exist
+    @Query("""
+            INSERT INTO user_media (user_id, media_id)
+            SELECT u.id, m.id FROM users u, media m WHERE u.id = :userId AND m.id = :mediaId
+            ON CONFLICT (user_id, media_id) DO NOTHING
+            RETURNING *
+            """)
+    Mono<UserMedia> insertIfAbsent(Long userId, Long mediaId);
+
+    Mono<UserMedia> findByUserIdAndMediaId(Long userId, Long mediaId);
+
+    // userIds[i] and mediaIds[i] form a pair; emits only the rows this statement created. Pairs
+    // naming a user or media that does not exist are skipped, rather than failing the batch
+    @Query("""
+            INSERT INTO user_media (user_id, media_id)
+            SELECT pair.user_id, pair.media_id FROM unnest(:userIds, :mediaIds) AS pair(user_id, media_id)
+            JOIN users u ON u.id = pair.user_id
+            JOIN media m ON m.id = pair.media_id
+            ON CONFLICT (user_id, media_id) DO NOTHING
+            RETURNING *
+            """)
+    Flux<UserMedia> insertAllIfAbsent(Long[] userIds, Long[] mediaIds);
+
+    @Query("""
+            SELECT um.* FROM user_media um
+            JOIN unnest(:userIds, :mediaIds) AS pair(user_id, media_id)
+              ON um.user_id = pair.user_id AND um.media_id = pair.media_id
+            """)
+    Flux<UserMedia> findAllByPairs(Long[] userIds, Long[] mediaIds);
+
+    @Query("DELETE FROM user_media WHERE id = :id RETURNING *")
+    Mono<UserMedia> removeById(Long id);
 }
@@ -1,10 +1,49 @@
 package app.project.repository;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
 import app.project.model.User;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Repository
 public interface UserRepository extends ReactiveCrudRepository<User, Long> {
-}
\ No newline at end of file
+
+    @Query("SELECT * FROM users WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<User> findPageAfter(Long afterId, int limit);
+
+    @Query("SELECT * FROM users WHERE id = ANY(:ids)")
+    Flux<User> findAllByIdAny(Long[] ids);
+
+    @Query("""
+            UPDATE users
+            SET name = :name, age = :age, gender = :gender, version = version + 1, updated_at = now()
+            WHERE id = :id AND (:expectedVersion IS NULL OR version = :expectedVersion)
+            RETURNING *
+            """)
+    Mono<User> updateById(Long id, String name, int age, String gender, Long expectedVersion);
+
+    // Null field arguments keep the stored value; clearGender writes NULL instead
+    @Query("""
+            UPDATE users
+            SET name = COALESCE(:name, name),
+                age = COALESCE(:age, age),
+                gender = CASE WHEN :clearGender THEN NULL ELSE COALESCE(:gender, gender) END,
+                version = version + 1,
+                updated_at = now()
+            WHERE id = :id AND (:expectedVersion IS NULL OR version = :expectedVersion)
+            RETURNING *
+            """)
+    Mono<User> patchById(Long id, String name, Integer age, String gender, boolean clearGender, Long expectedVersion);
+
+    // Bumped by a trigger on every statement that changes the table; used as the collection ETag
+    @Query("SELECT sum(version)::text FROM collection_versions WHERE collection = 'users'")
+    Mono<String> findCollectionVersion();
+
+    @Modifying
+    @Query("DELETE FROM users WHERE id = :id")
+    Mono<Integer> removeById(Long id);
+}
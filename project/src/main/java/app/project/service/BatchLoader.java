@@ -0,0 +1,77 @@
+package app.project.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+public class BatchLoader<V> implements AutoCloseable {
+
+    private final Function<Long[], Flux<V>> query;
+
+    private final Function<V, Long> idOf;
+
+    // Callers on different threads are serialized by locking the sink, instead of emitting through
+    // a sink that fails concurrent emissions and retrying them in a spin on the event loop
+    private final Sinks.Many<Request<V>> requests = Sinks.unsafe().many().unicast().onBackpressureBuffer();
+
+    private final Disposable pipeline;
+
+    // Keys are collected until maxBatchSize is reached or the window elapses, whichever comes first,
+    // and each batch is resolved by one query; at most concurrency batches hold a connection at a time
+    public BatchLoader(Function<Long[], Flux<V>> query, Function<V, Long> idOf, int maxBatchSize,
+            Duration window, int concurrency) {
+        this.query = query;
+        this.idOf = idOf;
+        this.pipeline = requests.asFlux()
+                .bufferTimeout(maxBatchSize, window, true)
+                .flatMap(this::dispatch, concurrency)
+                .subscribe();
+    }
+
+    public Mono<V> load(Long id) {
+        return Mono.defer(() -> {
+            Sinks.One<V> result = Sinks.one();
+            Sinks.EmitResult emitted;
+            synchronized (requests) {
+                emitted = requests.tryEmitNext(new Request<>(id, result));
+            }
+            if (emitted.isFailure()) {
+                return Mono.error(new IllegalStateException("Batch loader is closed: " + emitted));
+            }
+            return result.asMono();
+        });
+    }
+
+    private Mono<Void> dispatch(List<Request<V>> batch) {
+        Long[] ids = batch.stream().map(Request::id).distinct().toArray(Long[]::new);
+        return Flux.defer(() -> query.apply(ids))
+                .collectMap(idOf)
+                .doOnNext(found -> batch.forEach(request -> complete(request, found)))
+                .doOnError(error -> batch.forEach(request -> request.result().tryEmitError(error)))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    private void complete(Request<V> request, Map<Long, V> found) {
+        V value = found.get(request.id());
+        if (value != null) {
+            request.result().tryEmitValue(value);
+        } else {
+            request.result().tryEmitEmpty();
+        }
+    }
+
+    @Override
+    public void close() {
+        pipeline.dispose();
+    }
+
+    private record Request<V>(Long id, Sinks.One<V> result) {
+    }
+}
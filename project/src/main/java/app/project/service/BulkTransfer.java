@@ -0,0 +1,315 @@
+package app.project.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import app.project.model.Change;
+import app.project.model.ImportProgress;
+import app.project.model.Media;
+import app.project.model.User;
+import app.project.model.UserMedia;
+import app.project.repository.PostgresCopy;
+import app.project.repository.ReplicaRouting;
+import app.project.repository.StreamingReader;
+import app.project.repository.SubscriptionTotalsRepository;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.r2dbc.spi.Row;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Catalogue-sized loads and dumps for /admin/import and /admin/export. Imports go through
+// COPY FROM STDIN, which skips the per-statement round trips and bind parameters of the CRUD path.
+// The COPY runs in a transaction with one INSERT ... SELECT that logs every imported row to
+// change_log and with the counter adjustments, so /changes and ?since= readers see the import when
+// it commits, like any other write. The driver has no COPY TO STDOUT, so exports stream a single
+// SELECT through a portal instead
+@Slf4j
+@Service
+public class BulkTransfer {
+
+    // Lines per buffer handed to COPY, or per chunk written to an export response
+    private static final int CHUNK_LINES = 1000;
+
+    // payload builds the change_log payload of a row, the JSON ChangePublisher would write for it
+    private static final Map<String, Table> TABLES = Map.of(
+            "media", new Table("media", Media.class, List.of("title", "release_date", "average_rating", "type"),
+                    List.of("title", "releaseDate", "averageRating", "type"), Change.MEDIA,
+                    "json_build_object('id', id, 'title', title, 'releaseDate', release_date, 'averageRating', average_rating, "
+                            + "'type', type, 'version', version, 'createdAt', created_at, 'updatedAt', updated_at)"),
+            "users", new Table("users", User.class, List.of("name", "age", "gender"),
+                    List.of("name", "age", "gender"), Change.USER,
+                    "json_build_object('id', id, 'name', name, 'age', age, 'gender', gender, 'version', version, "
+                            + "'createdAt', created_at, 'updatedAt', updated_at)"),
+            "user-media", new Table("user_media", UserMedia.class, List.of("user_id", "media_id"),
+                    List.of("userId", "mediaId"), Change.USER_MEDIA,
+                    "json_build_object('id', id, 'userId', user_id, 'mediaId', media_id, 'createdAt', created_at, "
+                            + "'updatedAt', updated_at)"));
+
+    // Rows written by the current transaction: xmin holds the low 32 bits of its 64-bit id
+    private static final String IMPORTED = "CAST(CAST(xmin AS text) AS bigint) = CAST(CAST(pg_current_xact_id() AS text) AS bigint) % 4294967296";
+
+    @Autowired
+    private PostgresCopy postgresCopy;
+
+    @Autowired
+    private StreamingReader streamingReader;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SubscriptionTotalsRepository subscriptionTotalsRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private TitleSearch titleSearch;
+
+    @Value("${app.bulk.progress-interval:1s}")
+    private Duration progressInterval;
+
+    // The body is passed to COPY as it arrives, so it is parsed by Postgres: a header line with the
+    // columns of the entity, plus id first when ids is set
+    public Flux<ImportProgress> importCsv(String entity, boolean ids, Flux<DataBuffer> body) {
+        Table table = table(entity);
+        return copyIn(entity, table, ids, true, body.map(NettyDataBufferFactory::toByteBuf));
+    }
+
+    public Flux<ImportProgress> importNdjson(String entity, boolean ids, Flux<JsonNode> items) {
+        Table table = table(entity);
+        List<String> fields = ids ? withId(table.fields()) : table.fields();
+        Flux<ByteBuf> lines = items
+                .map(item -> csvLine(fields, item))
+                .buffer(CHUNK_LINES)
+                .map(chunk -> {
+                    ByteBuf buffer = ByteBufAllocator.DEFAULT.buffer(chunk.stream().mapToInt(String::length).sum());
+                    chunk.forEach(line -> buffer.writeCharSequence(line, StandardCharsets.UTF_8));
+                    return buffer;
+                });
+        return copyIn(entity, table, ids, false, lines);
+    }
+
+    public Flux<String> exportCsv(String entity, boolean ids) {
+        Table table = table(entity);
+        List<String> columns = ids ? withId(table.columns()) : table.columns();
+        Flux<String> rows = streamingReader.stream(
+                "SELECT " + String.join(", ", columns) + " FROM " + table.name() + " ORDER BY id",
+                (row, metadata) -> csvLine(row, columns.size()));
+        return Flux.concat(Mono.just(String.join(",", columns) + "\n"),
+                ReplicaRouting.replica(rows.buffer(CHUNK_LINES).map(chunk -> String.join("", chunk))));
+    }
+
+    public Flux<?> exportNdjson(String entity) {
+        Table table = table(entity);
+        return ReplicaRouting.replica(streamingReader.stream(table.type(), "SELECT * FROM " + table.name() + " ORDER BY id"));
+    }
+
+    public Mono<Long> count(String entity) {
+        return ReplicaRouting.replica(template.getDatabaseClient().sql("SELECT count(*) FROM " + table(entity).name())
+                .map(row -> row.get(0, Long.class))
+                .one());
+    }
+
+    // Emits a progress line every progressInterval while COPY runs, then one with the row count,
+    // or the error, once it has finished. Failures are reported in the stream rather than as an
+    // error, since by then the response has already started
+    private Flux<ImportProgress> copyIn(String entity, Table table, boolean ids, boolean header, Flux<ByteBuf> data) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong bytes = new AtomicLong();
+            AtomicLong lines = new AtomicLong();
+            Flux<ByteBuf> counted = data.doOnNext(buffer -> {
+                bytes.addAndGet(buffer.readableBytes());
+                lines.addAndGet(countLines(buffer));
+            });
+            List<String> columns = ids ? withId(table.columns()) : table.columns();
+            String sql = "COPY " + table.name() + " (" + String.join(", ", columns) + ") FROM STDIN WITH (FORMAT csv"
+                    + (header ? ", HEADER true)" : ")");
+            Mono<ImportProgress> finished = transactionalOperator.transactional(lastId(table, ids)
+                            .flatMap(lastId -> postgresCopy.copyIn(sql, counted)
+                                    .flatMap(rows -> logImport(table, lastId).then(adjustCounts(table, lastId, rows)).thenReturn(rows))))
+                    .flatMap(rows -> afterImport(table, ids).thenReturn(rows))
+                    .map(rows -> {
+                        log.info("Imported {} rows into {} in {}ms", rows, table.name(), elapsedMs(start));
+                        return ImportProgress.completed(entity, bytes.get(), lines.get(), elapsedMs(start), rows);
+                    })
+                    .onErrorResume(error -> {
+                        log.warn("Import into {} failed", table.name(), error);
+                        return Mono.just(ImportProgress.failed(entity, bytes.get(), lines.get(), elapsedMs(start),
+                                error.getMessage()));
+                    });
+            return finished.flux().publish(result -> Flux.merge(
+                    Flux.interval(progressInterval)
+                            .map(tick -> ImportProgress.running(entity, bytes.get(), lines.get(), elapsedMs(start)))
+                            .takeUntilOther(result),
+                    result));
+        });
+    }
+
+    // Without explicit ids, imported rows all get ids past the current last one, which narrows
+    // the search for them from the whole table to the new ids; -1 stands for no narrowing
+    private Mono<Long> lastId(Table table, boolean ids) {
+        if (ids) {
+            return Mono.just(-1L);
+        }
+        return template.getDatabaseClient().sql("SELECT coalesce(max(id), 0) FROM " + table.name())
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    private String importedRows(Table table, long lastId) {
+        return table.name() + " WHERE " + IMPORTED + (lastId >= 0 ? " AND id > " + lastId : "");
+    }
+
+    // One change_log row per imported row and one NOTIFY, as ChangePublisher does for a statement
+    private Mono<Void> logImport(Table table, long lastId) {
+        return template.getDatabaseClient()
+                .sql("""
+                        WITH c AS (
+                            INSERT INTO change_log (entity, entity_id, operation, payload)
+                            SELECT :entity, id, 'INSERT', CAST(%s AS jsonb) FROM %s ORDER BY id
+                            RETURNING id
+                        )
+                        SELECT CAST(pg_notify(:channel, CAST(count(*) AS text)) AS text) FROM c
+                        """.formatted(table.payload(), importedRows(table, lastId)))
+                .bind("entity", table.change())
+                .bind("channel", ChangePublisher.CHANNEL)
+                .then();
+    }
+
+    // Imported rows bypass the counters MediaService and UserMediaService keep up to date, so they
+    // are moved by what was imported: new media start with no subscribers, and imported links add
+    // to the subscriber count of their media
+    private Mono<Void> adjustCounts(Table table, long lastId, long rows) {
+        return switch (table.name()) {
+            case "media" -> subscriptionTotalsRepository.adjust(rows, 0).then();
+            case "user_media" -> template.getDatabaseClient()
+                    .sql("UPDATE media m SET subscriber_count = m.subscriber_count + i.added FROM (SELECT media_id, count(*) AS added FROM "
+                            + importedRows(table, lastId) + " GROUP BY media_id) i WHERE m.id = i.media_id")
+                    .then()
+                    .then(subscriptionTotalsRepository.adjust(0, rows))
+                    .then();
+            default -> Mono.empty();
+        };
+    }
+
+    // Runs once the import has committed; the title index is reloaded, serving searches from
+    // Postgres in the meantime
+    private Mono<Void> afterImport(Table table, boolean ids) {
+        Mono<Void> sequence = ids ? resetSequence(table) : Mono.empty();
+        return switch (table.name()) {
+            case "media" -> sequence.then(Mono.<Void>fromRunnable(titleSearch::load));
+            default -> sequence;
+        };
+    }
+
+    // Moves the id sequence past the imported ids, so rows created afterwards do not collide with them
+    private Mono<Void> resetSequence(Table table) {
+        return template.getDatabaseClient()
+                .sql("SELECT setval(pg_get_serial_sequence('" + table.name() + "', 'id'), coalesce(max(id), 0) + 1, false) FROM "
+                        + table.name())
+                .then();
+    }
+
+    private static Table table(String entity) {
+        Table table = TABLES.get(entity);
+        if (table == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown entity " + entity);
+        }
+        return table;
+    }
+
+    private static List<String> withId(List<String> names) {
+        List<String> all = new ArrayList<>(names.size() + 1);
+        all.add("id");
+        all.addAll(names);
+        return all;
+    }
+
+    // Missing and null fields become an unquoted empty value, which COPY reads as NULL; text is
+    // always quoted, so an empty string stays an empty string
+    private static String csvLine(List<String> fields, JsonNode item) {
+        if (!item.isObject()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Expected a JSON object per line, got " + item);
+        }
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            JsonNode value = item.get(fields.get(i));
+            if (value == null || value.isNull()) {
+                continue;
+            }
+            if (value.isTextual()) {
+                appendQuoted(line, value.asText());
+            } else if (value.isValueNode()) {
+                line.append(value.asText());
+            } else {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Field " + fields.get(i) + " is not a value");
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    private static String csvLine(Row row, int columns) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < columns; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            Object value = row.get(i);
+            if (value instanceof String text) {
+                if (text.isEmpty() || text.chars().anyMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+                    appendQuoted(line, text);
+                } else {
+                    line.append(text);
+                }
+            } else if (value != null) {
+                line.append(value);
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    private static void appendQuoted(StringBuilder line, String text) {
+        line.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    // Newlines inside quoted values are counted too, so for CSV this is an upper bound on the rows
+    private static long countLines(ByteBuf buffer) {
+        long lines = 0;
+        for (int i = buffer.readerIndex(); i < buffer.writerIndex(); i++) {
+            if (buffer.getByte(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static long elapsedMs(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private record Table(String name, Class<?> type, List<String> columns, List<String> fields, String change, String payload) {
+    }
+}
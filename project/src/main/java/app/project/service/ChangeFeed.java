@@ -0,0 +1,152 @@
+package app.project.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import app.project.model.Change;
+import app.project.model.ChangeCursor;
+import app.project.repository.ChangeLogRepository;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+// Reads change_log in (txid, id) order as transactions settle (see ChangeLogRepository.findSettledAfter)
+// and fans the changes out to /changes subscribers. ChangePublisher's notifications wake the reader
+// up as soon as a write commits; it also polls every pollInterval, since the horizon moves on
+// without a notification when a transaction that writes no changes ends
+@Slf4j
+@Component
+public class ChangeFeed {
+
+    private static final Object WAKE_UP = new Object();
+
+    @Autowired
+    private R2dbcProperties r2dbcProperties;
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Value("${app.changes.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${app.changes.retention:P7D}")
+    private Duration retention;
+
+    @Value("${app.changes.poll-interval:1s}")
+    private Duration pollInterval;
+
+    // Best effort: the listener never waits for a subscriber. Each subscriber drains its own
+    // bounded buffer (see changes), so one slow client cannot hold back the others
+    private final Sinks.Many<Change> sink = Sinks.many().multicast().directBestEffort();
+
+    // Position of the last change read; null until the listener has read the current horizon
+    private final AtomicReference<ChangeCursor> position = new AtomicReference<>();
+
+    private Disposable listener;
+
+    @PostConstruct
+    public void start() {
+        listener = Flux.defer(this::listen)
+                .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Change feed listener failed, reconnecting", signal.failure())))
+                .subscribe(sink::tryEmitNext);
+    }
+
+    @PreDestroy
+    public void stop() {
+        listener.dispose();
+    }
+
+    // A client that passes the position of the last change it saw first gets everything after it
+    // from change_log, then the live feed. The live feed is subscribed up front and buffered behind
+    // the replay, so changes that settle while the replay runs are not lost; the overlap is dropped
+    // by position, as both run in the same order.
+    // A client whose buffer overflows is disconnected and is expected to resume from its last position
+    public Flux<Change> changes(ChangeCursor after) {
+        Flux<Change> live = sink.asFlux()
+                .onBackpressureBuffer(bufferSize,
+                        dropped -> log.warn("Change feed subscriber fell {} changes behind, disconnecting", bufferSize));
+        if (after == null) {
+            return live;
+        }
+        AtomicReference<ChangeCursor> lastReplayed = new AtomicReference<>(after);
+        return Flux.mergeSequential(
+                        changeLogRepository.findSettledAfter(after.txid(), after.id()).map(change -> new Event(change, true)),
+                        live.map(change -> new Event(change, false)))
+                .handle((event, out) -> {
+                    if (event.replayed()) {
+                        lastReplayed.set(event.change().cursor());
+                        out.next(event.change());
+                    } else if (event.change().cursor().compareTo(lastReplayed.get()) > 0) {
+                        out.next(event.change());
+                    }
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${app.changes.purge-interval:PT1H}")
+    public Mono<Void> purgeExpired() {
+        return changeLogRepository.deleteOlderThan(OffsetDateTime.now().minus(retention))
+                .doOnNext(purged -> {
+                    if (purged > 0) {
+                        log.info("Purged {} changes older than {}", purged, retention);
+                    }
+                })
+                .then();
+    }
+
+    // On every (re)connect, LISTEN first and then read whatever settled since the last change read,
+    // so a dropped connection does not leave a gap in the feed. Wake-ups that arrive while a read
+    // runs collapse into one more read after it
+    private Flux<Change> listen() {
+        Mono<ChangeCursor> start = position.get() != null
+                ? Mono.just(position.get())
+                : changeLogRepository.findHorizon().map(ChangeCursor::before).doOnNext(position::set);
+        return start.thenMany(Flux.usingWhen(connect(),
+                connection -> connection.createStatement("LISTEN " + ChangePublisher.CHANNEL).execute()
+                        .flatMap(PostgresqlResult::getRowsUpdated)
+                        .thenMany(Flux.<Object>merge(connection.getNotifications(), Flux.interval(pollInterval))
+                                .startWith(WAKE_UP)
+                                .onBackpressureLatest()
+                                .concatMap(wakeUp -> readSettled(), 1)),
+                PostgresqlConnection::close));
+    }
+
+    private Flux<Change> readSettled() {
+        return Flux.defer(() -> changeLogRepository.findSettledAfter(position.get().txid(), position.get().id()))
+                .doOnNext(change -> position.set(change.cursor()));
+    }
+
+    // A dedicated connection outside the pool: LISTEN belongs to the session, and a pooled
+    // connection would be handed to other callers between our reads
+    private Mono<PostgresqlConnection> connect() {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(r2dbcProperties.getUrl()).mutate();
+        if (r2dbcProperties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, r2dbcProperties.getUsername());
+        }
+        if (r2dbcProperties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, r2dbcProperties.getPassword());
+        }
+        return Mono.from(ConnectionFactories.get(options.build()).create()).cast(PostgresqlConnection.class);
+    }
+
+    private record Event(Change change, boolean replayed) {
+    }
+}
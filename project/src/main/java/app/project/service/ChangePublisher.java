@@ -0,0 +1,53 @@
+package app.project.service;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.project.repository.ChangeLogRepository;
+import reactor.core.publisher.Mono;
+
+// Records writes in change_log and notifies ChangeFeed. Callers run it in the transaction of the
+// write itself, so a change is published exactly when the write commits
+@Service
+public class ChangePublisher {
+
+    static final String CHANNEL = "catalogue_changes";
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public <T> Mono<Void> inserted(String entity, List<T> items, Function<T, Long> idOf) {
+        return publish(entity, "INSERT", items, idOf);
+    }
+
+    public <T> Mono<T> updated(String entity, T item, Function<T, Long> idOf) {
+        return publish(entity, "UPDATE", List.of(item), idOf).thenReturn(item);
+    }
+
+    public Mono<Void> deleted(String entity, Long id) {
+        return changeLogRepository.append(CHANNEL, entity, "DELETE", new Long[] {id}, new String[] {null}).then();
+    }
+
+    private <T> Mono<Void> publish(String entity, String operation, List<T> items, Function<T, Long> idOf) {
+        if (items.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> {
+                    String[] payloads = new String[items.size()];
+                    for (int i = 0; i < payloads.length; i++) {
+                        payloads[i] = objectMapper.writeValueAsString(items.get(i));
+                    }
+                    return payloads;
+                })
+                .flatMap(payloads -> changeLogRepository.append(CHANNEL, entity, operation,
+                        items.stream().map(idOf).toArray(Long[]::new), payloads).then());
+    }
+}
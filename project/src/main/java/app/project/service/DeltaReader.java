@@ -0,0 +1,83 @@
+package app.project.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import app.project.model.Change;
+import app.project.model.ChangeCursor;
+import app.project.model.Delta;
+import app.project.repository.ChangeLogRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Tokens are positions in change_log, read the way ChangeFeed reads it: only changes of settled
+// transactions, in (txid, id) order, so a write that commits late is picked up on a later read
+// rather than skipped. Every response holds at most pageSize items; "more" says to fetch again.
+// A full fetch first takes the current position, then pages through the table by id; whatever
+// changes meanwhile comes again in the deltas after it. Clients apply deltas as upserts
+@Component
+public class DeltaReader {
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Value("${app.changes.retention:P7D}")
+    private Duration retention;
+
+    @Value("${app.delta.page-size:1000}")
+    private int pageSize;
+
+    public <T> Mono<Delta<T>> read(String entity, String token, Function<Long[], Flux<T>> findByIds,
+            BiFunction<Long, Integer, Flux<T>> findPageAfter, Function<T, Long> idOf) {
+        Delta.Token since = Delta.decodeToken(token);
+        return changeLogRepository.currentTimestamp().flatMap(now -> {
+            if (since == null) {
+                return changeLogRepository.findHorizon()
+                        .flatMap(horizon -> copy(new Delta.Token(ChangeCursor.before(horizon), now, 0L), findPageAfter, idOf));
+            }
+            if (since.issuedAt().isBefore(now.minus(retention))) {
+                // Changes this old have been purged from the change log
+                return Mono.error(new ResponseStatusException(HttpStatus.GONE, "since token has expired, fetch without it"));
+            }
+            if (since.copyAfter() != null) {
+                return copy(since, findPageAfter, idOf);
+            }
+            return changeLogRepository.findSettledAfter(entity, since.position().txid(), since.position().id(), pageSize)
+                    .collectList()
+                    .flatMap(changes -> changed(changes, findByIds, new Delta.Token(
+                            changes.isEmpty() ? since.position() : changes.get(changes.size() - 1).cursor(), now, null)));
+        });
+    }
+
+    private <T> Mono<Delta<T>> copy(Delta.Token token, BiFunction<Long, Integer, Flux<T>> findPageAfter, Function<T, Long> idOf) {
+        return findPageAfter.apply(token.copyAfter(), pageSize).collectList().map(items -> {
+            boolean more = items.size() == pageSize;
+            Long copyAfter = more ? idOf.apply(items.get(items.size() - 1)) : null;
+            return new Delta<>(items, List.of(),
+                    Delta.encodeToken(new Delta.Token(token.position(), token.issuedAt(), copyAfter)), more);
+        });
+    }
+
+    // The last change of each entity decides whether it is sent as an item or as deleted. An item
+    // changed again after the page may be sent in its newer state; it comes again next time anyway
+    private <T> Mono<Delta<T>> changed(List<Change> changes, Function<Long[], Flux<T>> findByIds, Delta.Token next) {
+        Map<Long, String> last = new LinkedHashMap<>();
+        changes.forEach(change -> last.put(change.getEntityId(), change.getOperation()));
+        List<Long> deleted = new ArrayList<>();
+        List<Long> upserted = new ArrayList<>();
+        last.forEach((id, operation) -> ("DELETE".equals(operation) ? deleted : upserted).add(id));
+        Mono<List<T>> items = upserted.isEmpty() ? Mono.just(List.of()) : findByIds.apply(upserted.toArray(Long[]::new)).collectList();
+        return items.map(found -> new Delta<>(found, deleted, Delta.encodeToken(next), changes.size() == pageSize));
+    }
+}
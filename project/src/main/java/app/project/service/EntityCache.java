@@ -0,0 +1,79 @@
+package app.project.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import reactor.core.publisher.Mono;
+
+public class EntityCache<V> {
+
+    private static final int STRIPES = 64;
+
+    private final String name;
+
+    private final Cache<Long, V> cache;
+
+    // Bumped by every invalidation; a load only publishes its value if its stripe was not bumped
+    // while the query was running, so a read that raced with a write can never be cached
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    public EntityCache(String name, long maximumSize, Duration timeToLive) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    public Mono<V> get(Long id, Function<Long, Mono<V>> loader) {
+        return Mono.defer(() -> {
+            V cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            int stripe = stripe(id);
+            long generation = generations.get(stripe);
+            return loader.apply(id)
+                    .doOnNext(value -> cache.asMap().compute(id,
+                            (key, existing) -> generations.get(stripe) == generation ? value : existing));
+        });
+    }
+
+    // Runs under the same per-key lock as the publish in get(), so once this returns no
+    // load that started earlier can put its value back
+    public void invalidate(Long id) {
+        cache.asMap().compute(id, (key, existing) -> {
+            generations.incrementAndGet(stripe(key));
+            return null;
+        });
+    }
+
+    public void invalidateAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static int stripe(Long id) {
+        return Math.floorMod(Long.hashCode(id), STRIPES);
+    }
+}
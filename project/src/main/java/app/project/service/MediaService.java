@@ -1,43 +1,282 @@
 package app.project.service;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
 
+import app.project.model.BatchResult;
+import app.project.model.Change;
+import app.project.model.CursorPage;
+import app.project.model.Delta;
 import app.project.model.Media;
+import app.project.model.MediaPatch;
+import app.project.model.MediaStats;
+import app.project.model.MultiGetEntry;
+import app.project.model.SubscriptionTotals;
+import app.project.repository.BatchInserter;
 import app.project.repository.MediaRepository;
+import app.project.repository.ReplicaRouting;
+import app.project.repository.StreamingReader;
+import app.project.repository.SubscriptionTotalsRepository;
+import app.project.repository.TopMediaReader;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 public class MediaService {
 
+    // Bounds for open-ended date filters; LocalDate.MIN and MAX are outside the range of a Postgres DATE
+    private static final LocalDate EARLIEST_RELEASE = LocalDate.of(1, 1, 1);
+
+    private static final LocalDate LATEST_RELEASE = LocalDate.of(9999, 12, 31);
+
     @Autowired
     private MediaRepository mediaRepository;
 
-    public Flux<Media> getAllMedia() {
-        return mediaRepository.findAll();
+    @Autowired
+    private TopMediaReader topMediaReader;
+
+    @Autowired
+    private EntityCache<Media> mediaCache;
+
+    @Autowired
+    private SingleFlight<Long, Media> mediaLookups;
+
+    @Autowired
+    private BatchLoader<Media> mediaLoader;
+
+    @Value("${app.lookup.batch.enabled:true}")
+    private boolean batchLookups;
+
+    @Value("${app.multi-get.max-ids:500}")
+    private int multiGetMaxIds;
+
+    @Autowired
+    private BatchInserter batchInserter;
+
+    @Autowired
+    private StreamingReader streamingReader;
+
+    @Autowired
+    private SubscriptionTotalsRepository subscriptionTotalsRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ChangePublisher changePublisher;
+
+    @Autowired
+    private DeltaReader deltaReader;
+
+    @Autowired
+    private TitleSearch titleSearch;
+
+    public Flux<Media> getAllMedia(LocalDate from, LocalDate to, Double minRating) {
+        boolean dateFiltered = from != null || to != null;
+        LocalDate lower = from != null ? from : EARLIEST_RELEASE;
+        LocalDate upper = to != null ? to : LATEST_RELEASE;
+        if (!dateFiltered && minRating == null) {
+            return ReplicaRouting.replica(mediaRepository.findAll());
+        }
+        if (minRating == null) {
+            return ReplicaRouting.replica(mediaRepository.findByReleaseDateBetween(lower, upper));
+        }
+        if (!dateFiltered) {
+            return ReplicaRouting.replica(mediaRepository.findByAverageRatingGreaterThan(minRating));
+        }
+        return ReplicaRouting.replica(mediaRepository.findByReleaseDateBetweenAndAverageRatingGreaterThan(lower, upper, minRating));
+    }
+
+    // by is rating or releaseDate; ties are broken by id so that equal values come back in a stable order.
+    // Unrated media sort after every rated one in either order. after is the nextCursor of the previous
+    // page, which holds the sort value and id of its last item, so no page skips over the ones before it
+    public Mono<CursorPage<Media>> getTopMedia(String by, String order, int n, String after, String type,
+            LocalDate from, LocalDate to) {
+        String property = switch (by) {
+            case "rating" -> "averageRating";
+            case "releaseDate" -> "releaseDate";
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "by must be rating or releaseDate");
+        };
+        Sort.Direction direction = Sort.Direction.fromOptionalString(order)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "order must be asc or desc"));
+        Function<Media, ?> sortValueOf = property.equals("averageRating") ? Media::getAverageRating : Media::getReleaseDate;
+        CursorPage.SortKey cursor = CursorPage.decodeCursor(after,
+                property.equals("averageRating") ? Double::valueOf : LocalDate::parse);
+        int pageSize = CursorPage.clampLimit(n);
+        LocalDate lower = from != null ? from : EARLIEST_RELEASE;
+        LocalDate upper = to != null ? to : LATEST_RELEASE;
+        return ReplicaRouting.replica(topMediaReader.findPage(property, direction,
+                        cursor != null ? cursor.value() : null, cursor != null ? cursor.id() : null,
+                        type, lower, upper, pageSize + 1)
+                .collectList()
+                .map(rows -> CursorPage.of(rows, pageSize, Media::getId, sortValueOf)));
     }
 
+    // The whole table goes through the streaming reader; filtered reads take the same queries as getAllMedia
+    public Flux<Media> streamAllMedia(LocalDate from, LocalDate to, Double minRating) {
+        if (from != null || to != null || minRating != null) {
+            return getAllMedia(from, to, minRating);
+        }
+        return ReplicaRouting.replica(streamingReader.stream(Media.class, "SELECT * FROM media ORDER BY id"));
+    }
+
+    public Mono<Delta<Media>> getMediaChangedSince(String token) {
+        return deltaReader.read(Change.MEDIA, token, mediaRepository::findAllByIdAny, mediaRepository::findPageAfter,
+                Media::getId);
+    }
+
+    public Mono<CursorPage<Media>> getMediaPage(String after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return ReplicaRouting.replica(mediaRepository.findPageAfter(CursorPage.decodeCursor(after), pageSize + 1)
+                .collectList()
+                .map(rows -> CursorPage.of(rows, pageSize, Media::getId)));
+    }
+
+    // Stays on the primary: the title index learns of a write as soon as it commits, and a lagging
+    // replica would not have the rows it points to yet
+    public Flux<Media> searchMedia(String query, int limit) {
+        return titleSearch.search(query, limit);
+    }
+
+    public Mono<MediaStats> getMediaStats(String type, LocalDate from, LocalDate to) {
+        return ReplicaRouting.replica(mediaRepository.computeStats(type, from, to));
+    }
+
+    // Stays on the primary, like the change feed reads: a row read from a lagging replica just after
+    // a write would be cached and outlive the write's invalidation
     public Mono<Media> getMediaById(Long id) {
-        return mediaRepository.findById(id);
+        return mediaCache.get(id, key -> mediaLookups.execute(key, () -> batchLookups ? mediaLoader.load(key) : mediaRepository.findById(key)));
+    }
+
+    public Flux<MultiGetEntry<Media>> getMediaByIds(List<Long> ids) {
+        if (ids.size() > multiGetMaxIds) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + multiGetMaxIds + " ids can be requested at once"));
+        }
+        return ReplicaRouting.replica(mediaRepository.findAllByIdAny(ids.stream().distinct().toArray(Long[]::new))
+                .collectMap(Media::getId)
+                .flatMapIterable(found -> ids.stream().map(id -> new MultiGetEntry<>(id, found.get(id))).toList()));
+    }
+
+    public Flux<Media> getMediaForUser(Long userId) {
+        return ReplicaRouting.replica(mediaRepository.findSubscribedByUserId(userId));
+    }
+
+    public Mono<Long> getSubscriberCount(Long id) {
+        return ReplicaRouting.replica(mediaRepository.findSubscriberCount(id));
+    }
+
+    public Mono<Double> getAverageSubscribersPerMedia() {
+        return ReplicaRouting.replica(subscriptionTotalsRepository.findTotals()
+                .map(SubscriptionTotals::getAverageSubscribersPerMedia));
     }
 
     public Mono<Media> createMedia(Media media) {
-        return mediaRepository.save(media);
+        return transactionalOperator.transactional(mediaRepository.save(media)
+                .flatMap(saved -> subscriptionTotalsRepository.adjust(1, 0)
+                        .then(changePublisher.inserted(Change.MEDIA, List.of(saved), Media::getId))
+                        .thenReturn(saved)))
+                .doOnNext(titleSearch::indexed);
+    }
+
+    // Titles reach the search index only once their rows are committed: all of them when an atomic
+    // batch ends on its committed line, or those reported as created in per-item mode, where a
+    // failed chunk is rolled back and its rows retried under new ids
+    public Flux<BatchResult> createMediaBatch(Flux<Media> media, boolean perItemErrors) {
+        return Flux.defer(() -> {
+            Map<Long, Media> inserted = new ConcurrentHashMap<>();
+            Set<Long> created = ConcurrentHashMap.newKeySet();
+            AtomicBoolean committed = new AtomicBoolean(perItemErrors);
+            return batchInserter.insertAll(Media.class, media, perItemErrors,
+                            chunk -> {
+                                chunk.forEach(item -> inserted.put(item.getId(), item));
+                                return subscriptionTotalsRepository.adjust(chunk.size(), 0)
+                                        .then(changePublisher.inserted(Change.MEDIA, chunk, Media::getId));
+                            })
+                    .doOnNext(result -> {
+                        if (result.getId() != null) {
+                            created.add(result.getId());
+                        } else if (Boolean.TRUE.equals(result.getCommitted())) {
+                            committed.set(true);
+                        }
+                    })
+                    .doFinally(signal -> {
+                        if (committed.get()) {
+                            created.forEach(id -> titleSearch.indexed(inserted.get(id)));
+                        }
+                    });
+        });
+    }
+
+    public Mono<String> getMediaCollectionVersion() {
+        return ReplicaRouting.replica(mediaRepository.findCollectionVersion());
+    }
+
+    // expectedVersion is null for unconditional writes
+    public Mono<Media> updateMedia(Long id, Media updatedMedia, Long expectedVersion) {
+        return transactionalOperator.transactional(mediaRepository.updateById(id, updatedMedia.getTitle(),
+                                updatedMedia.getReleaseDate(), updatedMedia.getAverageRating(), updatedMedia.getType(),
+                                expectedVersion)
+                        .flatMap(saved -> changePublisher.updated(Change.MEDIA, saved, Media::getId)))
+                .switchIfEmpty(versionConflict(id, expectedVersion))
+                .doOnSuccess(saved -> evict(id))
+                .doOnNext(titleSearch::indexed);
     }
 
-    public Mono<Media> updateMedia(Long id, Media updatedMedia) {
-        return mediaRepository.findById(id)
-                .flatMap(existingMedia -> {
-                    existingMedia.setTitle(updatedMedia.getTitle());
-                    existingMedia.setReleaseDate(updatedMedia.getReleaseDate());
-                    existingMedia.setAverageRating(updatedMedia.getAverageRating());
-                    existingMedia.setType(updatedMedia.getType());
-                    return mediaRepository.save(existingMedia);
+    public Mono<Media> patchMedia(Long id, MediaPatch patch, Long expectedVersion) {
+        return transactionalOperator.transactional(mediaRepository.patchById(id, patch.getTitle(),
+                                patch.getReleaseDate(), patch.getAverageRating(), patch.getType(),
+                                patch.clearsAverageRating(), patch.clearsType(), expectedVersion)
+                        .flatMap(saved -> changePublisher.updated(Change.MEDIA, saved, Media::getId)))
+                .switchIfEmpty(versionConflict(id, expectedVersion))
+                .doOnSuccess(saved -> evict(id))
+                .doOnNext(titleSearch::indexed);
+    }
+
+    // Emits whether a row was deleted
+    public Mono<Boolean> deleteMedia(Long id) {
+        return transactionalOperator.transactional(mediaRepository.removeById(id)
+                        .filter(deleted -> deleted > 0)
+                        .flatMap(deleted -> subscriptionTotalsRepository.adjust(-deleted, 0)
+                                .then(changePublisher.deleted(Change.MEDIA, id))
+                                .thenReturn(true))
+                        .defaultIfEmpty(false))
+                .doOnSuccess(deleted -> {
+                    evict(id);
+                    if (Boolean.TRUE.equals(deleted)) {
+                        titleSearch.removed(id);
+                    }
                 });
     }
 
-    public Mono<Void> deleteMedia(Long id) {
-        return mediaRepository.deleteById(id);
+    // Only reached when a conditional write matched no row, to tell a stale version from a missing one
+    private Mono<Media> versionConflict(Long id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return mediaRepository.existsById(id)
+                .flatMap(exists -> exists
+                        ? Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Media item " + id + " has changed"))
+                        : Mono.empty());
+    }
+
+    // Detach in-flight reads before invalidating, so no reader arriving after the write can
+    // join or cache a query that started before it
+    private void evict(Long id) {
+        mediaLookups.forget(id);
+        mediaCache.invalidate(id);
     }
 }
@@ -0,0 +1,66 @@
+package app.project.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import reactor.core.publisher.Mono;
+
+public class SingleFlight<K, V> {
+
+    private final String name;
+
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder deduplicated = new LongAdder();
+
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> query) {
+        return Mono.defer(() -> {
+            Mono<V> call = inFlight.get(key);
+            if (call == null) {
+                Mono<V> created = share(key, query);
+                call = inFlight.putIfAbsent(key, created);
+                if (call == null) {
+                    return created;
+                }
+            }
+            deduplicated.increment();
+            return call;
+        });
+    }
+
+    // Detaches the in-flight query from new callers; writers call this once their change is
+    // committed so that nobody arriving afterwards joins a read that started before it
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    // share() runs the query once for every waiter: its value, emptiness or error reaches all of them,
+    // and the query is only cancelled once every waiter has cancelled
+    private Mono<V> share(K key, Supplier<Mono<V>> query) {
+        AtomicReference<Mono<V>> self = new AtomicReference<>();
+        Mono<V> call = Mono.defer(query)
+                .doFinally(signal -> inFlight.remove(key, self.get()))
+                .share();
+        self.set(call);
+        return call;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public long deduplicated() {
+        return deduplicated.sum();
+    }
+}
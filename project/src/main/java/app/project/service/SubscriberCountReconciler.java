@@ -0,0 +1,51 @@
+package app.project.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import app.project.repository.MediaRepository;
+import app.project.repository.SubscriptionTotalsRepository;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+// Recomputes the denormalized counters from user_media, in case a write path outside the
+// service (manual SQL, an old client) left them drifting. Each statement corrects the drift it
+// sees in its own snapshot, so nothing is locked beyond the rows being repaired, and media items
+// are visited in batches of batchSize to keep every statement short
+@Slf4j
+@Component
+public class SubscriberCountReconciler {
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private SubscriptionTotalsRepository subscriptionTotalsRepository;
+
+    @Value("${app.subscriber-counts.reconcile-batch-size:1000}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${app.subscriber-counts.reconcile-interval:PT10M}",
+            initialDelayString = "${app.subscriber-counts.reconcile-interval:PT10M}")
+    public Mono<Void> reconcile() {
+        return Mono.defer(() -> {
+            AtomicLong repaired = new AtomicLong();
+            return Mono.just(0L)
+                    .expand(afterId -> mediaRepository.findBatchEnd(afterId, batchSize)
+                            .flatMap(lastId -> mediaRepository.reconcileSubscriberCounts(afterId, lastId)
+                                    .doOnNext(repaired::addAndGet)
+                                    .thenReturn(lastId)))
+                    .then(subscriptionTotalsRepository.reconcile())
+                    .doOnSuccess(totals -> {
+                        if (repaired.get() > 0) {
+                            log.warn("Repaired subscriber counts for {} media items", repaired.get());
+                        }
+                    })
+                    .then();
+        });
+    }
+}
@@ -0,0 +1,312 @@
+package app.project.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram posting lists over normalized titles (lower case, accents and punctuation removed).
+// A query is answered by intersecting the posting lists of its trigrams and then checking each
+// candidate against the stored title, so the lists only need to over-approximate: a stale entry
+// costs a comparison, never a wrong result. Queries shorter than a trigram match word prefixes.
+// Titles live in slots that are never reused; updates and deletes leave dead slots behind, and
+// the index is compacted once more than half of its slots are dead
+public class TitleIndex {
+
+    // Ranks, best first; within a rank shorter titles come first
+    private static final int EXACT = 0;
+
+    private static final int TITLE_PREFIX = 1;
+
+    private static final int WORD_PREFIX = 2;
+
+    private static final int SUBSTRING = 3;
+
+    private static final int MIN_COMPACTION_SLOTS = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[MIN_COMPACTION_SLOTS];
+
+    private String[] titles = new String[MIN_COMPACTION_SLOTS]; // normalized; null once dead
+
+    private int slots;
+
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    public void put(long id, String title) {
+        String normalized = normalize(title);
+        lock.writeLock().lock();
+        try {
+            Integer previous = slotsById.remove(id);
+            if (previous != null) {
+                if (normalized.equals(titles[previous])) {
+                    slotsById.put(id, previous);
+                    return;
+                }
+                titles[previous] = null;
+            }
+            if (!normalized.isEmpty()) {
+                add(id, normalized);
+            }
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.remove(id);
+            if (slot != null) {
+                titles[slot] = null;
+                compactIfSparse();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Ids of the best matching titles, best first
+    public List<Long> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        String wordStart = " " + normalized;
+        long[] grams = queryGrams(normalized);
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null) {
+                    return List.of();
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+            // Worst hit on top, so it is the one evicted once the heap holds limit hits
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Comparator.<Hit>naturalOrder().reversed());
+            int[] positions = new int[lists.length];
+            Postings smallest = lists[0];
+            candidates:
+            for (int i = 0; i < smallest.size; i++) {
+                int slot = smallest.slots[i];
+                for (int l = 1; l < lists.length; l++) {
+                    positions[l] = lists[l].seek(slot, positions[l]);
+                    if (positions[l] >= lists[l].size) {
+                        break candidates;
+                    }
+                    if (lists[l].slots[positions[l]] != slot) {
+                        continue candidates;
+                    }
+                }
+                String title = titles[slot];
+                if (title == null) {
+                    continue;
+                }
+                int rank = rank(title, normalized, wordStart);
+                if (rank < 0) {
+                    continue;
+                }
+                if (best.size() == limit && !best.peek().isWorseThan(rank, title.length(), ids[slot])) {
+                    continue;
+                }
+                best.add(new Hit(rank, title.length(), ids[slot]));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            Hit[] hits = best.toArray(new Hit[0]);
+            Arrays.sort(hits);
+            List<Long> result = new ArrayList<>(hits.length);
+            for (Hit hit : hits) {
+                result.add(hit.id());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower case, without accents, words separated by single spaces
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean separator = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (separator && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                separator = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                separator = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    // wordStart is the query with a leading blank
+    private static int rank(String title, String query, String wordStart) {
+        if (query.length() < 3) {
+            return title.startsWith(query) ? (title.length() == query.length() ? EXACT : TITLE_PREFIX)
+                    : title.contains(wordStart) ? WORD_PREFIX : -1;
+        }
+        int at = title.indexOf(query);
+        if (at < 0) {
+            return -1;
+        }
+        if (at == 0) {
+            return title.length() == query.length() ? EXACT : TITLE_PREFIX;
+        }
+        return title.charAt(at - 1) == ' ' || title.indexOf(wordStart, at) >= 0 ? WORD_PREFIX : SUBSTRING;
+    }
+
+    private void add(long id, String normalized) {
+        if (slots == ids.length) {
+            ids = Arrays.copyOf(ids, slots * 2);
+            titles = Arrays.copyOf(titles, slots * 2);
+        }
+        int slot = slots++;
+        ids[slot] = id;
+        titles[slot] = normalized;
+        slotsById.put(id, slot);
+        // Two leading blanks mark the start of the title; every word also gets a blank-blank-letter
+        // gram so that one letter queries can find word prefixes
+        String padded = "  " + normalized + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            postings.computeIfAbsent(gram(padded.charAt(i), padded.charAt(i + 1), padded.charAt(i + 2)), key -> new Postings())
+                    .add(slot);
+        }
+        for (int i = 1; i < normalized.length(); i++) {
+            if (normalized.charAt(i - 1) == ' ') {
+                postings.computeIfAbsent(gram(' ', ' ', normalized.charAt(i)), key -> new Postings()).add(slot);
+            }
+        }
+    }
+
+    // Grams every matching title contains: the query's own trigrams, or for one and two character
+    // queries the gram of a word starting with them
+    private static long[] queryGrams(String query) {
+        if (query.length() == 1) {
+            return new long[] {gram(' ', ' ', query.charAt(0))};
+        }
+        if (query.length() == 2) {
+            return new long[] {gram(' ', query.charAt(0), query.charAt(1))};
+        }
+        long[] grams = new long[query.length() - 2];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gram(query.charAt(i), query.charAt(i + 1), query.charAt(i + 2));
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    private void compactIfSparse() {
+        if (slots < MIN_COMPACTION_SLOTS || slotsById.size() * 2 > slots) {
+            return;
+        }
+        long[] liveIds = new long[slotsById.size()];
+        String[] liveTitles = new String[liveIds.length];
+        int live = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (titles[slot] != null) {
+                liveIds[live] = ids[slot];
+                liveTitles[live++] = titles[slot];
+            }
+        }
+        ids = new long[Math.max(MIN_COMPACTION_SLOTS, live * 2)];
+        titles = new String[ids.length];
+        slots = 0;
+        slotsById.clear();
+        postings.clear();
+        for (int i = 0; i < live; i++) {
+            add(liveIds[i], liveTitles[i]);
+        }
+    }
+
+    private static long gram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private record Hit(int rank, int length, long id) implements Comparable<Hit> {
+
+        @Override
+        public int compareTo(Hit other) {
+            if (rank != other.rank) {
+                return Integer.compare(rank, other.rank);
+            }
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return Long.compare(id, other.id);
+        }
+
+        // Lets search skip allocating hits that would not make it into the result
+        boolean isWorseThan(int otherRank, int otherLength, long otherId) {
+            if (rank != otherRank) {
+                return rank > otherRank;
+            }
+            if (length != otherLength) {
+                return length > otherLength;
+            }
+            return id > otherId;
+        }
+    }
+
+    // Slots in ascending order: slots are handed out in increasing order and never reused
+    private static final class Postings {
+
+        private int[] slots = new int[4];
+
+        private int size;
+
+        void add(int slot) {
+            if (size > 0 && slots[size - 1] == slot) {
+                return;
+            }
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            slots[size++] = slot;
+        }
+
+        // Position of the first slot >= target, searching from position from
+        int seek(int target, int from) {
+            int low = from;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (slots[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
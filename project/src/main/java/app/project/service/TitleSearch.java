@@ -0,0 +1,199 @@
+package app.project.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.project.model.Change;
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import app.project.repository.StreamingReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Title search for /media/search. In memory mode the TitleIndex ranks the ids and the rows are
+// then read by id, so a result never shows an item that is gone or out of date. Until the index
+// has been loaded, and in postgres mode, the query runs against the pg_trgm index instead.
+// Every instance keeps its own index: its own writes are applied as they commit, and those of
+// the other instances arrive through the change feed, usually within a poll interval
+@Slf4j
+@Service
+public class TitleSearch {
+
+    public static final int MAX_LIMIT = 100;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private StreamingReader streamingReader;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.search.mode:memory}")
+    private String mode;
+
+    private volatile TitleIndex index = new TitleIndex();
+
+    private volatile boolean ready;
+
+    // Bumped by every load, so a load that has been superseded stops filling the index
+    private long generation;
+
+    // Items written while the index is loading; their rows in the load may already be stale
+    private final Set<Long> writtenDuringLoad = ConcurrentHashMap.newKeySet();
+
+    private Disposable changes;
+
+    // Subscribed before the first load, so a write either is in the load or arrives afterwards.
+    // The feed delivers changes in commit order, so the last one applied holds the current title
+    @PostConstruct
+    public void followChanges() {
+        if (!"memory".equals(mode)) {
+            return;
+        }
+        changes = changeFeed.changes(null)
+                .filter(change -> Change.MEDIA.equals(change.getEntity()))
+                .subscribe(this::apply, error -> {
+                    // Changes may have been missed; start over from a fresh load
+                    log.warn("Title index lost the change feed, reloading", error);
+                    followChanges();
+                    load();
+                });
+    }
+
+    @PreDestroy
+    public void stopFollowingChanges() {
+        if (changes != null) {
+            changes.dispose();
+        }
+    }
+
+    // Also called after a bulk import; searches go to Postgres until the new index is complete
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!"memory".equals(mode)) {
+            return;
+        }
+        long start = System.nanoTime();
+        TitleIndex loading = new TitleIndex();
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = ++generation;
+            ready = false;
+            index = loading;
+            writtenDuringLoad.clear();
+        }
+        streamingReader.stream(Media.class, "SELECT * FROM media")
+                .doOnNext(media -> {
+                    synchronized (this) {
+                        if (generation != loadGeneration) {
+                            throw new CancellationException();
+                        }
+                        if (!writtenDuringLoad.contains(media.getId())) {
+                            loading.put(media.getId(), media.getTitle());
+                        }
+                    }
+                })
+                .then()
+                .onErrorResume(CancellationException.class, superseded -> Mono.empty())
+                .subscribe(null,
+                        error -> log.warn("Loading the title index failed, searching Postgres instead", error),
+                        () -> {
+                            synchronized (this) {
+                                if (generation != loadGeneration) {
+                                    return;
+                                }
+                                ready = true;
+                                writtenDuringLoad.clear();
+                            }
+                            log.info("Indexed {} media titles in {}ms", loading.size(), (System.nanoTime() - start) / 1_000_000);
+                        });
+    }
+
+    public Flux<Media> search(String query, int limit) {
+        if (TitleIndex.normalize(query).isEmpty()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "The query needs a letter or digit"));
+        }
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        if (!ready) {
+            return mediaRepository.searchByTitle(query.trim().toLowerCase(), likePattern(query), size);
+        }
+        List<Long> ids = index.search(query, size);
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return mediaRepository.findAllByIdAny(ids.toArray(Long[]::new))
+                .collectMap(Media::getId)
+                .flatMapIterable(found -> ids.stream().map(found::get).filter(Objects::nonNull).toList());
+    }
+
+    // Called by MediaService once a write has committed
+    public void indexed(Media media) {
+        put(media.getId(), media.getTitle());
+    }
+
+    public void removed(Long id) {
+        synchronized (this) {
+            if (!ready) {
+                writtenDuringLoad.add(id);
+            }
+            index.remove(id);
+        }
+    }
+
+    private void put(Long id, String title) {
+        synchronized (this) {
+            if (!ready) {
+                writtenDuringLoad.add(id);
+            }
+            index.put(id, title);
+        }
+    }
+
+    private void apply(Change change) {
+        if ("DELETE".equals(change.getOperation())) {
+            removed(change.getEntityId());
+            return;
+        }
+        if (change.getPayload() == null) {
+            return;
+        }
+        try {
+            String title = objectMapper.readTree(change.getPayload()).path("title").textValue();
+            if (title != null) {
+                put(change.getEntityId(), title);
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Skipping media change {} with an unreadable payload", change.getId(), e);
+        }
+    }
+
+    private static String likePattern(String query) {
+        return query.trim().toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -1,36 +1,236 @@
 package app.project.service;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
 
+import app.project.model.Change;
+import app.project.model.CursorPage;
+import app.project.model.Delta;
+import app.project.model.MediaSubscribers;
+import app.project.model.Subscription;
+import app.project.model.User;
 import app.project.model.UserMedia;
+import app.project.repository.MediaRepository;
+import app.project.repository.ReplicaRouting;
+import app.project.repository.StreamingReader;
+import app.project.repository.SubscriptionTotalsRepository;
 import app.project.repository.UserMediaRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+@Slf4j
 @Service
 public class UserMediaService {
 
+    private static final String SUBSCRIPTIONS_QUERY = """
+            SELECT um.user_id, u.name AS user_name, u.age AS user_age, u.gender AS user_gender,
+                   um.media_id, m.title AS media_title
+            FROM user_media um
+            JOIN users u ON u.id = um.user_id
+            JOIN media m ON m.id = um.media_id
+            """;
+
     @Autowired
     private UserMediaRepository userMediaRepository;
 
+    @Autowired
+    private StreamingReader streamingReader;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private SubscriptionTotalsRepository subscriptionTotalsRepository;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ChangePublisher changePublisher;
+
+    @Autowired
+    private DeltaReader deltaReader;
+
+    @Value("${app.links.write-behind.enabled:false}")
+    private boolean writeBehind;
+
+    @Value("${app.links.write-behind.capacity:10000}")
+    private int writeBehindCapacity;
+
+    @Value("${app.links.write-behind.batch-size:500}")
+    private int writeBehindBatchSize;
+
+    @Value("${app.links.write-behind.max-delay:20ms}")
+    private Duration writeBehindMaxDelay;
+
+    @Value("${app.links.write-behind.offer-timeout:1s}")
+    private Duration writeBehindOfferTimeout;
+
+    @Value("${app.links.write-behind.shutdown-timeout:10s}")
+    private Duration writeBehindShutdownTimeout;
+
+    private WriteBehindBuffer<Link, UserMedia> linkBuffer;
+
+    @PostConstruct
+    public void startLinkBuffer() {
+        if (writeBehind) {
+            linkBuffer = new WriteBehindBuffer<>(this::insertLinks, link -> insertLink(link.userId(), link.mediaId()),
+                    writeBehindCapacity, writeBehindBatchSize, writeBehindMaxDelay, writeBehindOfferTimeout);
+        }
+    }
+
+    // Runs before the connection pool is closed, so links already accepted are still written
+    @PreDestroy
+    public void flushLinkBuffer() {
+        if (linkBuffer != null) {
+            linkBuffer.close(writeBehindShutdownTimeout);
+        }
+    }
+
     public Flux<UserMedia> getAllUserMedia() {
-        return userMediaRepository.findAll();
+        return ReplicaRouting.replica(userMediaRepository.findAll());
+    }
+
+    public Flux<UserMedia> streamAllUserMedia() {
+        return ReplicaRouting.replica(streamingReader.stream(UserMedia.class, "SELECT * FROM user_media ORDER BY id"));
+    }
+
+    public Mono<Delta<UserMedia>> getUserMediaChangedSince(String token) {
+        return deltaReader.read(Change.USER_MEDIA, token, userMediaRepository::findAllByIdAny, userMediaRepository::findPageAfter,
+                UserMedia::getId);
+    }
+
+    public Mono<CursorPage<UserMedia>> getUserMediaPage(String after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return ReplicaRouting.replica(userMediaRepository.findPageAfter(CursorPage.decodeCursor(after), pageSize + 1)
+                .collectList()
+                .map(rows -> CursorPage.of(rows, pageSize, UserMedia::getId)));
+    }
+
+    public Flux<Subscription> getSubscriptions(String ageOrder) {
+        String orderBy = ageOrder == null ? "um.id" : "u.age " + direction(ageOrder) + ", um.id";
+        return ReplicaRouting.replica(streamingReader.stream(Subscription.class, SUBSCRIPTIONS_QUERY + "ORDER BY " + orderBy));
+    }
+
+    // Rows arrive sorted by media, so each group is complete as soon as the media id changes
+    // and only one group is ever held in memory
+    public Flux<MediaSubscribers> getSubscriptionsByMedia(String ageOrder) {
+        String orderBy = ageOrder == null ? "um.media_id, um.id" : "um.media_id, u.age " + direction(ageOrder) + ", um.id";
+        return ReplicaRouting.replica(streamingReader.stream(Subscription.class, SUBSCRIPTIONS_QUERY + "ORDER BY " + orderBy)
+                .bufferUntilChanged(Subscription::getMediaId)
+                .map(group -> new MediaSubscribers(group.get(0).getMediaId(), group.get(0).getMediaTitle(),
+                        group.stream().map(UserMediaService::toUser).toList())));
     }
 
     public Mono<UserMedia> getUserMediaById(Long id) {
-        return userMediaRepository.findById(id);
+        return ReplicaRouting.replica(userMediaRepository.findById(id));
     }
 
+    // In write-behind mode links are coalesced into batched inserts; either way the returned Mono
+    // completes once the row is committed, or fails with 404 if the user or media does not exist
     public Mono<UserMedia> addUserMediaRelationship(Long userId, Long mediaId) {
-        UserMedia userMedia = new UserMedia();
-        userMedia.setUserId(userId);
-        userMedia.setMediaId(mediaId);
-        return userMediaRepository.save(userMedia);
+        return (linkBuffer != null ? linkBuffer.write(new Link(userId, mediaId)) : insertLink(userId, mediaId))
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "No user " + userId + " or no media " + mediaId)));
+    }
+
+    private Mono<UserMedia> insertLink(Long userId, Long mediaId) {
+        // Counters only move when the insert actually created a row, so repeated links leave them alone
+        return transactionalOperator.transactional(userMediaRepository.insertIfAbsent(userId, mediaId)
+                        .flatMap(link -> adjustCounts(link, 1)
+                                .then(changePublisher.inserted(Change.USER_MEDIA, List.of(link), UserMedia::getId))
+                                .thenReturn(link)))
+                .switchIfEmpty(userMediaRepository.findByUserIdAndMediaId(userId, mediaId));
+    }
+
+    // Emits whether a row was deleted
+    public Mono<Boolean> deleteUserMedia(Long id) {
+        return transactionalOperator.transactional(userMediaRepository.removeById(id)
+                        .flatMap(link -> adjustCounts(link, -1)
+                                .then(changePublisher.deleted(Change.USER_MEDIA, link.getId()))
+                                .thenReturn(true)))
+                .defaultIfEmpty(false);
+    }
+
+    // One statement for the whole batch; pairs that were already linked are read back afterwards.
+    // Pairs the insert skipped because the user or media is missing are left out of the map
+    private Mono<Map<Link, UserMedia>> insertLinks(List<Link> links) {
+        return transactionalOperator.transactional(userMediaRepository.insertAllIfAbsent(
+                                links.stream().map(Link::userId).toArray(Long[]::new),
+                                links.stream().map(Link::mediaId).toArray(Long[]::new))
+                        .collectList()
+                        .flatMap(inserted -> inserted.isEmpty()
+                                ? Mono.just(inserted)
+                                : adjustCounts(inserted)
+                                        .then(changePublisher.inserted(Change.USER_MEDIA, inserted, UserMedia::getId))
+                                        .thenReturn(inserted)))
+                .flatMap(inserted -> {
+                    Map<Link, UserMedia> rows = new HashMap<>();
+                    inserted.forEach(row -> rows.put(new Link(row.getUserId(), row.getMediaId()), row));
+                    List<Link> existing = links.stream().filter(link -> !rows.containsKey(link)).toList();
+                    if (existing.isEmpty()) {
+                        return Mono.just(rows);
+                    }
+                    return userMediaRepository.findAllByPairs(existing.stream().map(Link::userId).toArray(Long[]::new),
+                                    existing.stream().map(Link::mediaId).toArray(Long[]::new))
+                            .doOnNext(row -> rows.put(new Link(row.getUserId(), row.getMediaId()), row))
+                            .then(Mono.fromSupplier(() -> {
+                                long missing = existing.stream().filter(link -> !rows.containsKey(link)).count();
+                                if (missing > 0) {
+                                    log.warn("Skipped {} of {} batched links whose user or media does not exist", missing, links.size());
+                                }
+                                return rows;
+                            }));
+                });
+    }
+
+    private Mono<Void> adjustCounts(List<UserMedia> inserted) {
+        Map<Long, Long> perMedia = inserted.stream()
+                .collect(Collectors.groupingBy(UserMedia::getMediaId, TreeMap::new, Collectors.counting()));
+        return mediaRepository.adjustSubscriberCounts(perMedia.keySet().toArray(Long[]::new), perMedia.values().toArray(Long[]::new))
+                .then(subscriptionTotalsRepository.adjust(0, inserted.size()))
+                .then();
+    }
+
+    private Mono<Void> adjustCounts(UserMedia link, long delta) {
+        return mediaRepository.adjustSubscriberCount(link.getMediaId(), delta)
+                .then(subscriptionTotalsRepository.adjust(0, delta))
+                .then();
+    }
+
+    private static String direction(String ageOrder) {
+        if ("asc".equalsIgnoreCase(ageOrder)) {
+            return "ASC";
+        }
+        if ("desc".equalsIgnoreCase(ageOrder)) {
+            return "DESC";
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ageOrder must be asc or desc");
+    }
+
+    private record Link(Long userId, Long mediaId) {
     }
 
-    public Mono<Void> deleteUserMedia(Long id) {
-        return userMediaRepository.findById(id)
-                .flatMap(userMediaRepository::delete);
+    private static User toUser(Subscription subscription) {
+        User user = new User();
+        user.setId(subscription.getUserId());
+        user.setName(subscription.getUserName());
+        user.setAge(subscription.getUserAge());
+        user.setGender(subscription.getUserGender());
+        return user;
     }
 }
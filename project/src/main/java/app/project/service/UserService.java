@@ -1,9 +1,24 @@
 package app.project.service;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.web.server.ResponseStatusException;
 
+import app.project.model.BatchResult;
+import app.project.model.Change;
+import app.project.model.CursorPage;
+import app.project.model.Delta;
+import app.project.model.MultiGetEntry;
 import app.project.model.User;
+import app.project.model.UserPatch;
+import app.project.repository.BatchInserter;
+import app.project.repository.ReplicaRouting;
+import app.project.repository.StreamingReader;
 import app.project.repository.UserRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -14,30 +29,123 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private EntityCache<User> userCache;
+
+    @Autowired
+    private SingleFlight<Long, User> userLookups;
+
+    @Autowired
+    private BatchLoader<User> userLoader;
+
+    @Value("${app.lookup.batch.enabled:true}")
+    private boolean batchLookups;
+
+    @Value("${app.multi-get.max-ids:500}")
+    private int multiGetMaxIds;
+
+    @Autowired
+    private BatchInserter batchInserter;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ChangePublisher changePublisher;
+
+    @Autowired
+    private DeltaReader deltaReader;
+
+    @Autowired
+    private StreamingReader streamingReader;
+
     public Flux<User> getAllUsers() {
-        return userRepository.findAll();
+        return ReplicaRouting.replica(userRepository.findAll());
     }
 
+    public Flux<User> streamAllUsers() {
+        return ReplicaRouting.replica(streamingReader.stream(User.class, "SELECT * FROM users ORDER BY id"));
+    }
+
+    public Mono<Delta<User>> getUsersChangedSince(String token) {
+        return deltaReader.read(Change.USER, token, userRepository::findAllByIdAny, userRepository::findPageAfter,
+                User::getId);
+    }
+
+    public Mono<CursorPage<User>> getUserPage(String after, int limit) {
+        int pageSize = CursorPage.clampLimit(limit);
+        return ReplicaRouting.replica(userRepository.findPageAfter(CursorPage.decodeCursor(after), pageSize + 1)
+                .collectList()
+                .map(rows -> CursorPage.of(rows, pageSize, User::getId)));
+    }
+
+    // Stays on the primary, so the cache never picks up a row from a lagging replica
     public Mono<User> getUserById(Long id) {
-        return userRepository.findById(id);
+        return userCache.get(id, key -> userLookups.execute(key, () -> batchLookups ? userLoader.load(key) : userRepository.findById(key)));
+    }
+
+    public Flux<MultiGetEntry<User>> getUsersByIds(List<Long> ids) {
+        if (ids.size() > multiGetMaxIds) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + multiGetMaxIds + " ids can be requested at once"));
+        }
+        return ReplicaRouting.replica(userRepository.findAllByIdAny(ids.stream().distinct().toArray(Long[]::new))
+                .collectMap(User::getId)
+                .flatMapIterable(found -> ids.stream().map(id -> new MultiGetEntry<>(id, found.get(id))).toList()));
     }
 
     public Mono<User> createUser(User user) {
-        return userRepository.save(user);
+        return transactionalOperator.transactional(userRepository.save(user)
+                .flatMap(saved -> changePublisher.inserted(Change.USER, List.of(saved), User::getId).thenReturn(saved)));
+    }
+
+    public Flux<BatchResult> createUserBatch(Flux<User> users, boolean perItemErrors) {
+        return batchInserter.insertAll(User.class, users, perItemErrors,
+                inserted -> changePublisher.inserted(Change.USER, inserted, User::getId));
+    }
+
+    public Mono<String> getUserCollectionVersion() {
+        return ReplicaRouting.replica(userRepository.findCollectionVersion());
+    }
+
+    // expectedVersion is null for unconditional writes
+    public Mono<User> updateUser(Long id, User updatedUser, Long expectedVersion) {
+        return transactionalOperator.transactional(userRepository.updateById(id, updatedUser.getName(),
+                                updatedUser.getAge(), updatedUser.getGender(), expectedVersion)
+                        .flatMap(saved -> changePublisher.updated(Change.USER, saved, User::getId)))
+                .switchIfEmpty(versionConflict(id, expectedVersion))
+                .doOnSuccess(saved -> evict(id));
+    }
+
+    public Mono<User> patchUser(Long id, UserPatch patch, Long expectedVersion) {
+        return transactionalOperator.transactional(userRepository.patchById(id, patch.getName(), patch.getAge(),
+                                patch.getGender(), patch.clearsGender(), expectedVersion)
+                        .flatMap(saved -> changePublisher.updated(Change.USER, saved, User::getId)))
+                .switchIfEmpty(versionConflict(id, expectedVersion))
+                .doOnSuccess(saved -> evict(id));
+    }
+
+    // Emits whether a row was deleted
+    public Mono<Boolean> deleteUser(Long id) {
+        return transactionalOperator.transactional(userRepository.removeById(id)
+                        .filter(deleted -> deleted > 0)
+                        .flatMap(deleted -> changePublisher.deleted(Change.USER, id).thenReturn(true))
+                        .defaultIfEmpty(false))
+                .doOnSuccess(deleted -> evict(id));
     }
 
-    public Mono<User> updateUser(Long id, User updatedUser) {
-        return userRepository.findById(id)
-                .flatMap(existingUser -> {
-                    existingUser.setName(updatedUser.getName());
-                    existingUser.setAge(updatedUser.getAge());
-                    existingUser.setGender(updatedUser.getGender());
-                    return userRepository.save(existingUser);
-                });
+    private Mono<User> versionConflict(Long id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.empty();
+        }
+        return userRepository.existsById(id)
+                .flatMap(exists -> exists
+                        ? Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "User " + id + " has changed"))
+                        : Mono.empty());
     }
 
-    public Mono<Void> deleteUser(Long id) {
-        return userRepository.findById(id)
-                .flatMap(userRepository::delete);
+    private void evict(Long id) {
+        userLookups.forget(id);
+        userCache.invalidate(id);
     }
 }
@@ -0,0 +1,137 @@
+package app.project.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+public class WriteBehindBuffer<K, V> {
+
+    private static final Duration OFFER_RETRY_DELAY = Duration.ofMillis(5);
+
+    private final Function<List<K>, Mono<Map<K, V>>> batchWrite;
+
+    private final Function<K, Mono<V>> singleWrite;
+
+    private final int capacity;
+
+    private final Duration offerTimeout;
+
+    // Emissions are serialized by locking on the sink, so it needs no guard of its own
+    private final Sinks.Many<Request<K, V>> requests = Sinks.unsafe().many().unicast().onBackpressureBuffer();
+
+    // Writes accepted and not yet written. Counted here rather than by bounding the sink, because
+    // bufferTimeout drains the sink into its own buffers ahead of demand
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Sinks.Empty<Void> drained = Sinks.empty();
+
+    private volatile boolean closed;
+
+    // Writes are queued, up to capacity including the batch being written, and flushed one batch at a time once maxBatchSize distinct
+    // keys are waiting or maxDelay has passed. batchWrite returns the row of every key it could write,
+    // whether it created it or it already existed, and leaves out keys it skipped as invalid, whose
+    // callers complete empty; when it fails, each key of the batch is retried
+    // on its own with singleWrite, so one bad key only fails its own callers
+    public WriteBehindBuffer(Function<List<K>, Mono<Map<K, V>>> batchWrite, Function<K, Mono<V>> singleWrite,
+            int capacity, int maxBatchSize, Duration maxDelay, Duration offerTimeout) {
+        this.batchWrite = batchWrite;
+        this.singleWrite = singleWrite;
+        this.capacity = capacity;
+        this.offerTimeout = offerTimeout;
+        requests.asFlux()
+                .bufferTimeout(maxBatchSize, maxDelay, true)
+                .concatMap(batch -> flush(batch).doFinally(signal -> pending.addAndGet(-batch.size())))
+                .doFinally(signal -> drained.tryEmitEmpty())
+                .subscribe();
+    }
+
+    // Completes once the batch holding key has committed. While the queue is full the caller waits
+    // up to offerTimeout for room, then gets a 503
+    public Mono<V> write(K key) {
+        return Mono.defer(() -> {
+            Request<K, V> request = new Request<>(key, Sinks.one());
+            return offer(request).then(request.result().asMono());
+        });
+    }
+
+    private Mono<Void> offer(Request<K, V> request) {
+        return Mono.<Void>fromRunnable(() -> {
+                    if (closed) {
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shutting down");
+                    }
+                    if (pending.incrementAndGet() > capacity) {
+                        pending.decrementAndGet();
+                        throw new BufferFullException();
+                    }
+                    Sinks.EmitResult result;
+                    synchronized (requests) {
+                        result = requests.tryEmitNext(request);
+                    }
+                    if (result.isFailure()) {
+                        pending.decrementAndGet();
+                        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Shutting down");
+                    }
+                })
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, OFFER_RETRY_DELAY)
+                        .filter(BufferFullException.class::isInstance))
+                .timeout(offerTimeout, Mono.error(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Write buffer is full")));
+    }
+
+    private Mono<Void> flush(List<Request<K, V>> batch) {
+        Map<K, List<Request<K, V>>> byKey = new LinkedHashMap<>();
+        for (Request<K, V> request : batch) {
+            byKey.computeIfAbsent(request.key(), key -> new ArrayList<>()).add(request);
+        }
+        return Mono.defer(() -> batchWrite.apply(List.copyOf(byKey.keySet())))
+                .doOnNext(rows -> byKey.forEach((key, waiting) -> complete(waiting, rows.get(key))))
+                .then()
+                .onErrorResume(batchError -> Flux.fromIterable(byKey.entrySet())
+                        .concatMap(entry -> Mono.defer(() -> singleWrite.apply(entry.getKey()))
+                                .doOnSuccess(row -> complete(entry.getValue(), row))
+                                .doOnError(error -> entry.getValue().forEach(request -> request.result().tryEmitError(error)))
+                                .onErrorResume(error -> Mono.empty()))
+                        .then());
+    }
+
+    private void complete(List<Request<K, V>> waiting, V row) {
+        for (Request<K, V> request : waiting) {
+            if (row != null) {
+                request.result().tryEmitValue(row);
+            } else {
+                request.result().tryEmitEmpty();
+            }
+        }
+    }
+
+    // Stops taking writes and waits up to timeout for the queued ones to be flushed
+    public void close(Duration timeout) {
+        closed = true;
+        synchronized (requests) {
+            requests.tryEmitComplete();
+        }
+        drained.asMono().block(timeout);
+    }
+
+    private record Request<K, V>(K key, Sinks.One<V> result) {
+    }
+
+    private static final class BufferFullException extends RuntimeException {
+
+        BufferFullException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+-- Collection ETags for GET /media and GET /users: a counter per table that every statement
+-- changing its rows bumps, spread over 16 rows summed on read like subscription_totals.
+-- The subscriber_count updates of the link write paths do not change what GET /media returns,
+-- so they do not bump it
+CREATE TABLE IF NOT EXISTS collection_versions (
+    collection VARCHAR(20) NOT NULL,
+    stripe INT NOT NULL CHECK (stripe BETWEEN 1 AND 16),
+    version BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (collection, stripe)
+);
+
+INSERT INTO collection_versions (collection, stripe)
+SELECT collection, stripe FROM unnest(ARRAY['media', 'users']) AS collection, generate_series(1, 16) AS stripe;
+
+CREATE OR REPLACE FUNCTION bump_collection_version() RETURNS trigger AS $$
+DECLARE
+    chosen INT := 1 + floor(random() * 16)::int;
+BEGIN
+    UPDATE collection_versions SET version = version + 1 WHERE collection = TG_TABLE_NAME AND stripe = chosen;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER media_collection_version
+AFTER INSERT OR DELETE OR UPDATE OF title, release_date, average_rating, type, version ON media
+FOR EACH STATEMENT EXECUTE FUNCTION bump_collection_version();
+
+CREATE TRIGGER users_collection_version
+AFTER INSERT OR DELETE OR UPDATE OF name, age, gender, version ON users
+FOR EACH STATEMENT EXECUTE FUNCTION bump_collection_version();
@@ -0,0 +1,12 @@
+-- V5 calls change_log ids the commit order; they are not. The sequence hands out an id when the
+-- row is inserted, so a transaction that took a lower id can commit after a higher one is already
+-- visible, and a reader resuming from the highest id it has seen skips it.
+-- txid records the writing transaction. Readers only take rows whose transaction is older than
+-- pg_snapshot_xmin of their own snapshot, the oldest transaction still running: every such
+-- transaction has ended, so no row can appear below that horizon any more, and rows read in
+-- (txid, id) order never have an earlier row arrive after them. Rows logged before this migration
+-- keep txid 0 and so come first, in id order
+ALTER TABLE change_log ADD COLUMN txid BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE change_log ALTER COLUMN txid SET DEFAULT CAST(CAST(pg_current_xact_id() AS text) AS bigint);
+
+CREATE INDEX IF NOT EXISTS idx_change_log_position ON change_log (txid, id);
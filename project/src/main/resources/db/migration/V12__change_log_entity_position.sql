@@ -0,0 +1,4 @@
+-- ?since= tokens are now change_log positions, as in V11, rather than updated_at times (V6): a
+-- transaction's updated_at is its start time, and one that commits later than a reader's token
+-- was missed. Delta reads walk one entity's changes in (txid, id) order
+CREATE INDEX IF NOT EXISTS idx_change_log_entity_position ON change_log (entity, txid, id);
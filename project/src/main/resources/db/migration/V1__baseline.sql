@@ -1,6 +1,6 @@
 -- User table 
 CREATE TABLE IF NOT EXISTS users (
-    id BIGSERIAL PRIMARY KEY
+    id BIGSERIAL PRIMARY KEY,
     name VARCHAR(255) NOT NULL,
     age INT NOT NULL,
     gender VARCHAR(10)
@@ -20,4 +20,7 @@ CREATE TABLE IF NOT EXISTS user_media (
     id BIGSERIAL PRIMARY KEY,
     user_id BIGINT REFERENCES users(id),
     media_id BIGINT REFERENCES media(id)
-);
\ No newline at end of file
+);
+
+-- Subscriptions of a single user
+CREATE INDEX IF NOT EXISTS idx_user_media_user_id ON user_media (user_id);
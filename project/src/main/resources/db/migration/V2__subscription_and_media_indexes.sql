@@ -0,0 +1,17 @@
+-- Collapse duplicate links created before uniqueness was enforced, keeping the oldest row
+DELETE FROM user_media a
+USING user_media b
+WHERE a.user_id = b.user_id
+  AND a.media_id = b.media_id
+  AND a.id > b.id;
+
+-- One link per user and media; the backing index also serves lookups by user_id
+ALTER TABLE user_media ADD CONSTRAINT uq_user_media_user_media UNIQUE (user_id, media_id);
+DROP INDEX IF EXISTS idx_user_media_user_id;
+
+-- Subscribers of a single media item
+CREATE INDEX IF NOT EXISTS idx_user_media_media_id ON user_media (media_id);
+
+-- Release date and rating filters on media
+CREATE INDEX IF NOT EXISTS idx_media_release_date ON media (release_date);
+CREATE INDEX IF NOT EXISTS idx_media_average_rating ON media (average_rating);
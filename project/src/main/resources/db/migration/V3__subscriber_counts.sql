@@ -0,0 +1,17 @@
+-- Denormalized number of links per media item, kept up to date by the link write paths
+ALTER TABLE media ADD COLUMN subscriber_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE media m
+SET subscriber_count = c.subscribers
+FROM (SELECT media_id, count(*) AS subscribers FROM user_media GROUP BY media_id) c
+WHERE m.id = c.media_id;
+
+-- Single-row catalogue totals, so the average number of subscribers per media item is one lookup
+CREATE TABLE IF NOT EXISTS subscription_totals (
+    id INT PRIMARY KEY CHECK (id = 1),
+    media_count BIGINT NOT NULL,
+    subscription_count BIGINT NOT NULL
+);
+
+INSERT INTO subscription_totals (id, media_count, subscription_count)
+SELECT 1, (SELECT count(*) FROM media), (SELECT count(*) FROM user_media);
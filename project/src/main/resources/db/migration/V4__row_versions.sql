@@ -0,0 +1,4 @@
+-- Row versions for optimistic locking and ETags; every UPDATE of a row bumps its version
+ALTER TABLE media ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
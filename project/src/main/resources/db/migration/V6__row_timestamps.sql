@@ -0,0 +1,20 @@
+-- Creation and last modification times; the services set updated_at on every UPDATE, and
+-- ?since= reads rows by it. Existing rows get the migration time
+ALTER TABLE media
+    ADD COLUMN created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+ALTER TABLE users
+    ADD COLUMN created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+ALTER TABLE user_media
+    ADD COLUMN created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
+
+CREATE INDEX IF NOT EXISTS idx_media_updated_at ON media (updated_at);
+CREATE INDEX IF NOT EXISTS idx_users_updated_at ON users (updated_at);
+CREATE INDEX IF NOT EXISTS idx_user_media_updated_at ON user_media (updated_at);
+
+-- Tombstones for ?since= come from the DELETE entries of the change log
+CREATE INDEX IF NOT EXISTS idx_change_log_deletes ON change_log (entity, changed_at) WHERE operation = 'DELETE';
@@ -0,0 +1,4 @@
+-- Backs the postgres mode of /media/search, which matches lower(title) with LIKE '%q%'
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_media_title_trgm ON media USING gin (lower(title) gin_trgm_ops);
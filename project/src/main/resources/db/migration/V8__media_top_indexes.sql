@@ -0,0 +1,4 @@
+-- /media/top?type= reads these in order and stops after n rows; without a type the single
+-- column indexes from V2 serve the same purpose
+CREATE INDEX IF NOT EXISTS idx_media_type_average_rating ON media (type, average_rating, id);
+CREATE INDEX IF NOT EXISTS idx_media_type_release_date ON media (type, release_date, id);
@@ -0,0 +1,8 @@
+-- Catalogue totals spread over 16 rows that are summed on read, so concurrent link writes each
+-- update a random one of them instead of queueing on the lock of a single row
+ALTER TABLE subscription_totals DROP CONSTRAINT subscription_totals_id_check;
+
+INSERT INTO subscription_totals (id, media_count, subscription_count)
+SELECT stripe, 0, 0 FROM generate_series(2, 16) AS stripe;
+
+ALTER TABLE subscription_totals ADD CONSTRAINT subscription_totals_id_check CHECK (id BETWEEN 1 AND 16);
@@ -0,0 +1,94 @@
+package app.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.model.BatchResult;
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import app.project.service.MediaService;
+import app.project.service.SubscriberCountReconciler;
+import reactor.core.publisher.Flux;
+
+// Run with -Dbenchmark=true against the compose database. Creates generated media through
+// POST /media/batch's service method, atomic and per item, and through MediaRepository.save one
+// row at a time, and prints rows per second for each; the rows are deleted again afterwards
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BatchInsertBenchmarkTests {
+
+    private static final int BATCH_ROWS = 100_000;
+
+    private static final int SAVE_ROWS = 10_000;
+
+    private static final String TITLE_PREFIX = "Batch benchmark ";
+
+    @Autowired
+    private MediaService mediaService;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SubscriberCountReconciler subscriberCountReconciler;
+
+    @AfterEach
+    void deleteGeneratedRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then()
+                .then(subscriberCountReconciler.reconcile())
+                .block();
+    }
+
+    @Test
+    void batchInsertAgainstPerRowSave() {
+        report("batch, atomic", BATCH_ROWS, () -> {
+            List<BatchResult> results = mediaService.createMediaBatch(generated(BATCH_ROWS), false).collectList().block();
+            BatchResult last = results.get(results.size() - 1);
+            assertTrue(last.getCommitted(), "atomic batch rolled back: " + last.getError());
+            return last.getCount();
+        });
+
+        report("batch, per item", BATCH_ROWS, () -> mediaService.createMediaBatch(generated(BATCH_ROWS), true)
+                .filter(result -> result.getId() != null)
+                .count()
+                .block());
+
+        report("save() per row", SAVE_ROWS, () -> generated(SAVE_ROWS)
+                .concatMap(mediaRepository::save)
+                .count()
+                .block());
+    }
+
+    private static void report(String name, int rows, Supplier<Long> insert) {
+        long start = System.nanoTime();
+        Long inserted = insert.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals((long) rows, inserted);
+        System.out.printf("%-16s %,9d rows in %7.2fs  %,12.0f rows/s%n", name, rows, seconds, rows / seconds);
+    }
+
+    private static Flux<Media> generated(int rows) {
+        return Flux.range(0, rows).map(i -> {
+            Media media = new Media();
+            media.setTitle(TITLE_PREFIX + i);
+            media.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(i % 25_000));
+            media.setAverageRating((i % 100) / 10.0);
+            media.setType(i % 3 == 0 ? "TV Show" : "Movie");
+            return media;
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package app.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import app.project.service.BatchLoader;
+import app.project.service.SubscriberCountReconciler;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+// Run with -Dbenchmark=true against the compose database. Looks up generated media by id from many
+// concurrent callers on a parallel scheduler, through the mediaLoader and through one findById per
+// lookup, and prints lookups per second for each; the rows are deleted again afterwards
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BatchLoaderBenchmarkTests {
+
+    private static final int ROWS = 10_000;
+
+    private static final int LOOKUPS = 200_000;
+
+    private static final int CONCURRENCY = 1_000;
+
+    private static final String TITLE_PREFIX = "Loader benchmark ";
+
+    @Autowired
+    private BatchLoader<Media> mediaLoader;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SubscriberCountReconciler subscriberCountReconciler;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void insertRows() {
+        ids = Flux.range(0, ROWS)
+                .map(i -> {
+                    Media media = new Media();
+                    media.setTitle(TITLE_PREFIX + i);
+                    media.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(i));
+                    media.setType("Movie");
+                    return media;
+                })
+                .buffer(1_000)
+                .concatMap(mediaRepository::saveAll)
+                .map(Media::getId)
+                .collectList()
+                .block();
+    }
+
+    @AfterEach
+    void deleteGeneratedRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then()
+                .then(subscriberCountReconciler.reconcile())
+                .block();
+    }
+
+    @Test
+    void batchedAgainstPerKeyLookups() {
+        report("mediaLoader", mediaLoader::load);
+        report("findById", mediaRepository::findById);
+    }
+
+    private void report(String name, Function<Long, Mono<Media>> lookup) {
+        long start = System.nanoTime();
+        Long found = Flux.range(0, LOOKUPS)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> lookup.apply(ids.get(i % ROWS)), false, CONCURRENCY / Schedulers.DEFAULT_POOL_SIZE)
+                .sequential()
+                .count()
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertEquals((long) LOOKUPS, found);
+        System.out.printf("%-12s %,9d lookups in %7.2fs  %,12.0f lookups/s%n", name, LOOKUPS, seconds, LOOKUPS / seconds);
+    }
+}
@@ -0,0 +1,112 @@
+package app.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import app.project.model.ImportProgress;
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import app.project.service.BulkTransfer;
+import app.project.service.SubscriberCountReconciler;
+import reactor.core.publisher.Flux;
+
+// Run with -Dbenchmark=true against the compose database. Loads generated media through COPY, from
+// CSV and from NDJSON, and through MediaRepository.save one row at a time, and prints rows per
+// second for each; the rows, and the change_log entries the imports wrote for them, are deleted
+// again afterwards
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BulkImportBenchmarkTests {
+
+    private static final int COPY_ROWS = 500_000;
+
+    private static final int SAVE_ROWS = 20_000;
+
+    private static final int LINES_PER_BUFFER = 1_000;
+
+    private static final String TITLE_PREFIX = "Bulk benchmark ";
+
+    @Autowired
+    private BulkTransfer bulkTransfer;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SubscriberCountReconciler subscriberCountReconciler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void deleteGeneratedRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then()
+                .then(template.getDatabaseClient()
+                        .sql("DELETE FROM change_log WHERE entity = 'media' AND payload ->> 'title' LIKE '" + TITLE_PREFIX + "%'")
+                        .then())
+                .then(subscriberCountReconciler.reconcile())
+                .block();
+    }
+
+    @Test
+    void copyAgainstPerRowSave() {
+        Flux<DataBuffer> csv = Flux.concat(Flux.just("title,release_date,average_rating,type\n"),
+                        Flux.range(0, COPY_ROWS).map(i -> csvLine(syntheticMedia(i))))
+                .buffer(LINES_PER_BUFFER)
+                .map(lines -> DefaultDataBufferFactory.sharedInstance.wrap(String.join("", lines).getBytes(StandardCharsets.UTF_8)));
+        report("COPY from CSV", COPY_ROWS, () -> bulkTransfer.importCsv("media", false, csv).last().block());
+
+        Flux<JsonNode> ndjson = Flux.range(0, COPY_ROWS).map(i -> objectMapper.valueToTree(syntheticMedia(i)));
+        report("COPY from NDJSON", COPY_ROWS, () -> bulkTransfer.importNdjson("media", false, ndjson).last().block());
+
+        report("save() per row", SAVE_ROWS, () -> {
+            Long saved = Flux.range(0, SAVE_ROWS)
+                    .concatMap(i -> mediaRepository.save(syntheticMedia(i)))
+                    .count()
+                    .block();
+            return ImportProgress.completed("media", 0, SAVE_ROWS, 0, saved);
+        });
+    }
+
+    private static void report(String name, int rows, Supplier<ImportProgress> load) {
+        long start = System.nanoTime();
+        ImportProgress result = load.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        assertNull(result.getError());
+        assertEquals((long) rows, result.getRows());
+        System.out.printf("%-18s %,9d rows in %7.2fs  %,12.0f rows/s%n", name, rows, seconds, rows / seconds);
+    }
+
+    private static Media syntheticMedia(int i) {
+        Media media = new Media();
+        media.setTitle(TITLE_PREFIX + i);
+        media.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(i % 25_000));
+        media.setAverageRating((i % 100) / 10.0);
+        media.setType(i % 3 == 0 ? "TV Show" : "Movie");
+        return media;
+    }
+
+    private static String csvLine(Media media) {
+        return "\"" + media.getTitle() + "\"," + media.getReleaseDate() + "," + media.getAverageRating() + ",\""
+                + media.getType() + "\"\n";
+    }
+}
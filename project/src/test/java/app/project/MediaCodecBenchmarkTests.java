@@ -0,0 +1,139 @@
+package app.project;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+
+import app.project.config.CodecConfig;
+import app.project.model.Media;
+import reactor.core.publisher.Flux;
+
+// Run with -Dbenchmark=true against the compose database. Encodes and decodes 1M media rows as
+// NDJSON, streamed Smile and a CBOR sequence, with the codecs the server has registered, and prints
+// size, gzipped size and throughput of each. Spring has no streaming CBOR decoder, so the sequence
+// is read back with the registered CBOR decoder's ObjectMapper
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class MediaCodecBenchmarkTests {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final ResolvableType MEDIA = ResolvableType.forClass(Media.class);
+
+    private static final MediaType SMILE_STREAM = MediaType.parseMediaType("application/stream+x-jackson-smile");
+
+    @Autowired
+    private ServerCodecConfigurer serverCodecConfigurer;
+
+    @Test
+    void compareMediaCodecs() throws IOException {
+        run("json (ndjson)", MediaType.APPLICATION_NDJSON);
+        run("smile (stream)", SMILE_STREAM);
+
+        long start = System.nanoTime();
+        byte[] body = encode(CodecConfig.CBOR_SEQUENCE);
+        long encoded = System.nanoTime();
+        Jackson2CborDecoder decoder = (Jackson2CborDecoder) decoder(MediaType.APPLICATION_CBOR);
+        long count = 0;
+        try (MappingIterator<Media> rows = decoder.getObjectMapper().readerFor(Media.class).readValues(body)) {
+            for (; rows.hasNext(); rows.next()) {
+                count++;
+            }
+        }
+        long end = System.nanoTime();
+        assertEquals(ROWS, count);
+        report("cbor (sequence)", body, encoded - start, end - encoded);
+    }
+
+    private void run(String name, MediaType mediaType) throws IOException {
+        long start = System.nanoTime();
+        byte[] body = encode(mediaType);
+        long encoded = System.nanoTime();
+        Long count = decoder(mediaType).decode(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body)), MEDIA, mediaType,
+                        Collections.emptyMap())
+                .count()
+                .block();
+        long end = System.nanoTime();
+        assertEquals(ROWS, count);
+        report(name, body, encoded - start, end - encoded);
+    }
+
+    private byte[] encode(MediaType mediaType) {
+        return DataBufferUtils.join(encoder(mediaType).encode(Flux.range(1, ROWS).map(MediaCodecBenchmarkTests::syntheticMedia),
+                        DefaultDataBufferFactory.sharedInstance, MEDIA, mediaType, Collections.emptyMap()), Integer.MAX_VALUE)
+                .map(MediaCodecBenchmarkTests::toBytes)
+                .block();
+    }
+
+    // The first writer and reader for the type, the way content negotiation picks them
+    @SuppressWarnings("unchecked")
+    private Encoder<Object> encoder(MediaType mediaType) {
+        return serverCodecConfigurer.getWriters().stream()
+                .filter(writer -> writer instanceof EncoderHttpMessageWriter && writer.canWrite(MEDIA, mediaType))
+                .map(writer -> (Encoder<Object>) ((EncoderHttpMessageWriter<?>) writer).getEncoder())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Decoder<Object> decoder(MediaType mediaType) {
+        return serverCodecConfigurer.getReaders().stream()
+                .filter(reader -> reader instanceof DecoderHttpMessageReader && reader.canRead(MEDIA, mediaType))
+                .map(reader -> (Decoder<Object>) ((DecoderHttpMessageReader<?>) reader).getDecoder())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void report(String name, byte[] body, long encodeNanos, long decodeNanos) throws IOException {
+        System.out.printf("%-15s %,12d bytes  %,11d gzipped  encode %,10.0f rows/s  decode %,10.0f rows/s%n",
+                name, body.length, gzippedSize(body), ROWS / (encodeNanos / 1e9), ROWS / (decodeNanos / 1e9));
+    }
+
+    private static long gzippedSize(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.size();
+    }
+
+    private static byte[] toBytes(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+        return bytes;
+    }
+
+    private static Media syntheticMedia(int id) {
+        Media media = new Media();
+        media.setId((long) id);
+        media.setTitle("Title " + id);
+        media.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(id % 25_000));
+        media.setAverageRating((id % 100) / 10.0);
+        media.setType(id % 2 == 0 ? "Movie" : "TV Show");
+        media.setVersion(0L);
+        return media;
+    }
+}
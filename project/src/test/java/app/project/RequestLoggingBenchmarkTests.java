@@ -0,0 +1,110 @@
+package app.project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import net.logstash.logback.encoder.LogstashEncoder;
+
+// Run with -Dbenchmark=true. Several threads log one line per simulated request, the way the
+// request log does, as JSON through the LogstashEncoder the prod profile uses: through a
+// synchronous file appender, through the async appender in front of it, and through the async
+// appender with 1% sampling. Prints the caller-side rate of each and how many of the logged lines
+// the async appender dropped because its queue was full
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class RequestLoggingBenchmarkTests {
+
+    private static final int THREADS = 4;
+
+    private static final int REQUESTS_PER_THREAD = 250_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void compareAppenders() throws Exception {
+        LoggerContext context = new LoggerContext();
+        run(context, "sync", dir.resolve("sync.log"), fileAppender(context, dir.resolve("sync.log")), 1.0);
+        run(context, "async", dir.resolve("async.log"), asyncAppender(context, dir.resolve("async.log")), 1.0);
+        run(context, "async 1%", dir.resolve("sampled.log"), asyncAppender(context, dir.resolve("sampled.log")), 0.01);
+    }
+
+    private static void run(LoggerContext context, String name, Path file, Appender<ILoggingEvent> appender, double sampleRate)
+            throws InterruptedException, IOException {
+        Logger logger = context.getLogger("benchmark." + file.getFileName());
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+        LongAdder logged = new LongAdder();
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                    if (sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                        logger.atInfo()
+                                .addKeyValue("method", "GET")
+                                .addKeyValue("route", "/media/{id}")
+                                .addKeyValue("status", 200)
+                                .addKeyValue("durationMs", i % 50)
+                                .log("{} {} {} {}ms", "GET", "/media/{id}", 200, i % 50);
+                        logged.increment();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        // Stopping waits for the queue to drain, so every line missing from the file was dropped
+        appender.stop();
+        report(name, file, elapsed, logged.sum());
+    }
+
+    private static void report(String name, Path file, long elapsedNanos, long logged) throws IOException {
+        long lines;
+        try (var stream = Files.lines(file)) {
+            lines = stream.count();
+        }
+        System.out.printf("%-9s %,12.0f requests/s  %,9d lines logged  %,9d written  %,9d dropped%n",
+                name, THREADS * REQUESTS_PER_THREAD / (elapsedNanos / 1e9), logged, lines, logged - lines);
+    }
+
+    private static FileAppender<ILoggingEvent> fileAppender(LoggerContext context, Path file) {
+        LogstashEncoder encoder = new LogstashEncoder();
+        encoder.setContext(context);
+        encoder.start();
+        FileAppender<ILoggingEvent> appender = new FileAppender<>();
+        appender.setContext(context);
+        appender.setFile(file.toString());
+        appender.setEncoder(encoder);
+        appender.start();
+        return appender;
+    }
+
+    private static AsyncAppender asyncAppender(LoggerContext context, Path file) {
+        AsyncAppender appender = new AsyncAppender();
+        appender.setContext(context);
+        appender.setQueueSize(8192);
+        appender.setNeverBlock(true);
+        appender.setMaxFlushTime(0);
+        appender.addAppender(fileAppender(context, file));
+        appender.start();
+        return appender;
+    }
+}
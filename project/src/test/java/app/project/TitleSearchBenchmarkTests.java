@@ -0,0 +1,70 @@
+package app.project;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import app.project.service.TitleIndex;
+
+// Run with -Dbenchmark=true. Builds a TitleIndex over 1M generated titles and prints build time,
+// heap used and search latency percentiles for short, word, substring and multi-word queries.
+// TitleSearchDatabaseBenchmarkTests runs the same queries against the same titles through pg_trgm
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TitleSearchBenchmarkTests {
+
+    private static final int TITLES = 1_000_000;
+
+    private static final int SEARCHES = 1_000;
+
+    static final String[] WORDS = ("the a of and star wars return king lord rings dark knight night city love "
+            + "story man woman war peace blue red house game breaking office lost world park matrix godfather fiction "
+            + "club inception gladiator titanic avatar frozen toy alien predator terminator mission impossible fast "
+            + "furious potter hobbit pirates spider iron captain america thunder avengers guardians galaxy panther "
+            + "wonder justice league joker amelie destin fabuleux siege escape prison shawshank redemption forrest").split(" ");
+
+    static final String[] QUERIES = {"s", "st", "star", "knight", "ar wa", "dark knight", "the lord of",
+            "shawshank redemption 12", "zzz"};
+
+    @Test
+    void searchLatencyAtOneMillionTitles() {
+        Random random = new Random(42);
+        TitleIndex index = new TitleIndex();
+        long start = System.nanoTime();
+        for (long id = 1; id <= TITLES; id++) {
+            index.put(id, title(random, id));
+        }
+        long buildMs = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("built %d titles in %dms, %dMB heap in use%n", index.size(), buildMs,
+                (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024));
+
+        for (String query : QUERIES) {
+            for (int i = 0; i < SEARCHES; i++) {
+                index.search(query, 20);
+            }
+            long[] latencies = new long[SEARCHES];
+            int hits = 0;
+            for (int i = 0; i < SEARCHES; i++) {
+                long begin = System.nanoTime();
+                hits = index.search(query, 20).size();
+                latencies[i] = System.nanoTime() - begin;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%-26s p50 %7.3fms  p99 %7.3fms  max %7.3fms  %d hits%n", "\"" + query + "\"",
+                    latencies[SEARCHES / 2] / 1e6, latencies[SEARCHES * 99 / 100] / 1e6, latencies[SEARCHES - 1] / 1e6, hits);
+        }
+    }
+
+    static String title(Random random, long id) {
+        StringBuilder title = new StringBuilder();
+        int words = 1 + random.nextInt(4);
+        for (int w = 0; w < words; w++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            title.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length()).append(' ');
+        }
+        return title.append(id % 1000).toString();
+    }
+}
@@ -0,0 +1,94 @@
+package app.project;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.repository.MediaRepository;
+import app.project.service.SubscriberCountReconciler;
+import reactor.core.publisher.Flux;
+
+// Run with -Dbenchmark=true against the compose database. Inserts the 1M titles
+// TitleSearchBenchmarkTests indexes in memory and prints the latency percentiles of
+// MediaRepository.searchByTitle, the pg_trgm query that app.search.mode=postgres and a cold index
+// fall back to, for the same queries; the rows are deleted again afterwards. Each title carries a
+// prefix for the cleanup, which changes no query's matches but does move titles out of the
+// title-prefix rank
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TitleSearchDatabaseBenchmarkTests {
+
+    private static final int TITLES = 1_000_000;
+
+    private static final int BATCH = 10_000;
+
+    private static final int SEARCHES = 200;
+
+    private static final String TITLE_PREFIX = "Search benchmark ";
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SubscriberCountReconciler subscriberCountReconciler;
+
+    @BeforeEach
+    void insertTitles() {
+        Random random = new Random(42);
+        Flux.range(0, TITLES / BATCH)
+                .map(batch -> {
+                    String[] titles = new String[BATCH];
+                    for (int i = 0; i < BATCH; i++) {
+                        titles[i] = TITLE_PREFIX + TitleSearchBenchmarkTests.title(random, (long) batch * BATCH + i + 1);
+                    }
+                    return titles;
+                })
+                .concatMap(titles -> template.getDatabaseClient()
+                        .sql("INSERT INTO media (title, release_date, type) SELECT t, DATE '1990-01-01', 'Movie' FROM unnest(CAST(:titles AS text[])) AS t")
+                        .bind("titles", titles)
+                        .then())
+                .then(template.getDatabaseClient().sql("ANALYZE media").then())
+                .block();
+    }
+
+    @AfterEach
+    void deleteGeneratedRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then()
+                .then(subscriberCountReconciler.reconcile())
+                .block();
+    }
+
+    @Test
+    void searchLatencyAtOneMillionTitles() {
+        for (String query : TitleSearchBenchmarkTests.QUERIES) {
+            // None of the queries has a LIKE wildcard to escape, so the pattern is the query itself
+            for (int i = 0; i < SEARCHES / 10; i++) {
+                search(query);
+            }
+            long[] latencies = new long[SEARCHES];
+            int hits = 0;
+            for (int i = 0; i < SEARCHES; i++) {
+                long begin = System.nanoTime();
+                hits = search(query);
+                latencies[i] = System.nanoTime() - begin;
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%-26s p50 %7.3fms  p99 %7.3fms  max %7.3fms  %d hits%n", "\"" + query + "\"",
+                    latencies[SEARCHES / 2] / 1e6, latencies[SEARCHES * 99 / 100] / 1e6, latencies[SEARCHES - 1] / 1e6, hits);
+        }
+    }
+
+    private int search(String query) {
+        return mediaRepository.searchByTitle(query, query, 20).collectList().block().size();
+    }
+}
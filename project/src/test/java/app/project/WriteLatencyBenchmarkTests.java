@@ -0,0 +1,106 @@
+package app.project;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import app.project.service.SubscriberCountReconciler;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Run with -Dbenchmark=true against the compose database. Updates and deletes generated media one
+// at a time through the single statements PUT and DELETE /media/{id} run, and through the findById
+// followed by save or delete they replaced, and prints the latency percentiles of each; the rows
+// are deleted again afterwards. Both sides skip the change_log and counter writes the services add
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class WriteLatencyBenchmarkTests {
+
+    private static final int ROWS = 5_000;
+
+    private static final String TITLE_PREFIX = "Latency benchmark ";
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @Autowired
+    private SubscriberCountReconciler subscriberCountReconciler;
+
+    private List<Long> ids;
+
+    @BeforeEach
+    void insertRows() {
+        ids = Flux.range(0, 2 * ROWS)
+                .map(i -> media(TITLE_PREFIX + i))
+                .buffer(1_000)
+                .concatMap(mediaRepository::saveAll)
+                .map(Media::getId)
+                .collectList()
+                .block();
+    }
+
+    @AfterEach
+    void deleteGeneratedRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then()
+                .then(subscriberCountReconciler.reconcile())
+                .block();
+    }
+
+    @Test
+    void singleStatementAgainstReadThenWrite() {
+        List<Long> first = ids.subList(0, ROWS);
+        List<Long> second = ids.subList(ROWS, 2 * ROWS);
+
+        report("update, UPDATE RETURNING", first, id -> mediaRepository.updateById(id, TITLE_PREFIX + "updated " + id,
+                LocalDate.of(1990, 1, 1), 5.0, "Movie", null));
+        report("update, findById + save", second, id -> mediaRepository.findById(id)
+                .flatMap(found -> {
+                    found.setTitle(TITLE_PREFIX + "updated " + id);
+                    return mediaRepository.save(found);
+                }));
+
+        report("delete, DELETE", first, mediaRepository::removeById);
+        report("delete, findById + delete", second, id -> mediaRepository.findById(id).flatMap(mediaRepository::delete));
+    }
+
+    // Writes run one after another, so each latency is one request's round trips with no queueing
+    private static void report(String name, List<Long> ids, Function<Long, Mono<?>> write) {
+        long[] latencies = Flux.fromIterable(ids)
+                .concatMap(id -> Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return write.apply(id).then(Mono.fromSupplier(() -> System.nanoTime() - start));
+                }))
+                .collectList()
+                .block()
+                .stream()
+                .mapToLong(Long::longValue)
+                .sorted()
+                .toArray();
+        System.out.printf("%-26s %,6d writes  mean %7.3fms  p50 %7.3fms  p99 %7.3fms%n", name, latencies.length,
+                Arrays.stream(latencies).average().orElse(0) / 1e6, latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.99)] / 1e6);
+    }
+
+    private static Media media(String title) {
+        Media media = new Media();
+        media.setTitle(title);
+        media.setReleaseDate(LocalDate.of(1990, 1, 1));
+        media.setAverageRating(5.0);
+        media.setType("Movie");
+        return media;
+    }
+}
@@ -0,0 +1,60 @@
+package app.project.config;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.lang.reflect.Proxy;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+
+import app.project.repository.ReplicaRouting;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import reactor.core.publisher.Mono;
+
+class ReplicaRoutingConnectionFactoryTests {
+
+    private final Connection primaryConnection = connection();
+
+    private final Connection replicaConnection = connection();
+
+    private final ReplicaRoutingConnectionFactory routing = new ReplicaRoutingConnectionFactory(
+            factory(primaryConnection), factory(replicaConnection));
+
+    @Test
+    void unmarkedQueriesUseThePrimary() {
+        assertSame(primaryConnection, Mono.<Connection>from(routing.create()).block());
+    }
+
+    @Test
+    void replicaReadsUseTheReplica() {
+        assertSame(replicaConnection, ReplicaRouting.replica(Mono.<Connection>from(routing.create())).block());
+    }
+
+    @Test
+    void pinnedRequestsKeepReplicaReadsOnThePrimary() {
+        Mono<Connection> read = ReplicaRouting.replica(Mono.<Connection>from(routing.create()));
+
+        assertSame(primaryConnection, read.contextWrite(ReplicaRouting::pinToPrimary).block());
+    }
+
+    private static Connection connection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> null);
+    }
+
+    private static ConnectionFactory factory(Connection connection) {
+        return new ConnectionFactory() {
+            @Override
+            public Publisher<? extends Connection> create() {
+                return Mono.just(connection);
+            }
+
+            @Override
+            public ConnectionFactoryMetadata getMetadata() {
+                return () -> "stub";
+            }
+        };
+    }
+}
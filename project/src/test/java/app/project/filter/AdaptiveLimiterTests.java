@@ -0,0 +1,78 @@
+package app.project.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.test.StepVerifier;
+
+class AdaptiveLimiterTests {
+
+    @Test
+    void queuesOverTheLimitAndRejectsWhenTheQueueIsFull() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 1, Duration.ofSeconds(10));
+
+        AtomicBoolean queuedAdmitted = new AtomicBoolean();
+
+        StepVerifier.create(limiter.acquire()).verifyComplete();
+        StepVerifier.create(limiter.acquire()).verifyComplete();
+        limiter.acquire().subscribe(null, null, () -> queuedAdmitted.set(true));
+        StepVerifier.create(limiter.acquire()).verifyError(AdaptiveLimiter.Rejected.class);
+        assertFalse(queuedAdmitted.get());
+
+        // A released slot goes to the waiting request
+        limiter.release(0);
+        assertTrue(queuedAdmitted.get());
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    void timedOutWaiterDoesNotKeepASlot() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 10, 1, Duration.ofMillis(20));
+
+        StepVerifier.create(limiter.acquire()).verifyComplete();
+        StepVerifier.create(limiter.acquire()).expectError(AdaptiveLimiter.Rejected.class).verify(Duration.ofSeconds(1));
+
+        limiter.release(0);
+        assertEquals(0, limiter.inFlight());
+        StepVerifier.create(limiter.acquire()).verifyComplete();
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(20, 2, 200, 0, Duration.ofMillis(1));
+        runAtFullLimit(limiter, 1_000_000, 50);
+        double before = limiter.limit();
+
+        runAtFullLimit(limiter, 20_000_000, 20);
+
+        assertTrue(limiter.limit() < before / 2, "limit " + limiter.limit() + " did not drop from " + before);
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsSteady() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 2, 200, 0, Duration.ofMillis(1));
+
+        runAtFullLimit(limiter, 1_000_000, 40);
+
+        assertTrue(limiter.limit() > 20, "limit " + limiter.limit() + " did not grow from 10");
+    }
+
+    // Takes every available slot, then finishes them all with the given latency
+    private static void runAtFullLimit(AdaptiveLimiter limiter, long rttNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limiter.acquire().thenReturn(true).onErrorReturn(AdaptiveLimiter.Rejected.class, false).block()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.release(rttNanos);
+            }
+        }
+    }
+}
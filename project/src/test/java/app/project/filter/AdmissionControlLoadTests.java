@@ -0,0 +1,97 @@
+package app.project.filter;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.pool.InstrumentedPool;
+import reactor.pool.PoolBuilder;
+
+// Run with -Dbenchmark=true. Offers twice the load a 10 connection pool with 5ms queries can
+// serve, once straight into the pool and once through an AdaptiveLimiter set up like the filter,
+// and prints p99 latency per second. Without the limiter p99 grows for as long as the overload
+// lasts; with it the excess is rejected and p99 stays flat
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AdmissionControlLoadTests {
+
+    private static final int POOL_SIZE = 10;
+
+    private static final Duration QUERY_TIME = Duration.ofMillis(5);
+
+    private static final int REQUESTS_PER_MS = 4;
+
+    private static final int SECONDS = 5;
+
+    @Test
+    void p99StaysFlatUnderOverload() {
+        long[] unlimited = run(null);
+        long[] limited = run(new AdaptiveLimiter(20, 2, 200, 50, Duration.ofMillis(100)));
+
+        assertTrue(limited[SECONDS - 1] < unlimited[SECONDS - 1] / 4,
+                "p99 with admission control " + limited[SECONDS - 1] + "ms, without " + unlimited[SECONDS - 1] + "ms");
+    }
+
+    // Returns the p99 latency in ms of the requests that arrived in each second
+    private long[] run(AdaptiveLimiter limiter) {
+        InstrumentedPool<Object> pool = PoolBuilder.from(Mono.fromSupplier(Object::new))
+                .sizeBetween(0, POOL_SIZE)
+                .maxPendingAcquireUnbounded()
+                .buildPool();
+        List<Queue<Long>> latencies = new ArrayList<>();
+        for (int s = 0; s < SECONDS; s++) {
+            latencies.add(new ConcurrentLinkedQueue<>());
+        }
+        AtomicInteger rejected = new AtomicInteger();
+        long start = System.nanoTime();
+
+        Flux.interval(Duration.ofMillis(1))
+                .take(SECONDS * 1000L)
+                .flatMap(tick -> Flux.range(0, REQUESTS_PER_MS), Integer.MAX_VALUE)
+                .flatMap(i -> request(pool, limiter, start, latencies, rejected), Integer.MAX_VALUE)
+                .blockLast();
+        pool.dispose();
+
+        long[] p99 = new long[SECONDS];
+        StringBuilder report = new StringBuilder(limiter == null ? "unlimited:" : "admission control:");
+        for (int s = 0; s < SECONDS; s++) {
+            List<Long> sorted = new ArrayList<>(latencies.get(s));
+            Collections.sort(sorted);
+            p99[s] = sorted.isEmpty() ? 0 : sorted.get((int) (sorted.size() * 0.99)) / 1_000_000;
+            report.append(" ").append(p99[s]).append("ms");
+        }
+        System.out.println(report.append(", rejected ").append(rejected.get()));
+        return p99;
+    }
+
+    private Mono<Void> request(InstrumentedPool<Object> pool, AdaptiveLimiter limiter, long start,
+            List<Queue<Long>> latencies, AtomicInteger rejected) {
+        return Mono.defer(() -> {
+            long arrived = System.nanoTime();
+            Mono<Void> query = pool.withPoolable(connection -> Mono.delay(QUERY_TIME)).then();
+            Mono<Void> admitted = limiter == null ? query : limiter.acquire().then(Mono.defer(() -> {
+                long admittedAt = System.nanoTime();
+                return query.doFinally(signal -> limiter.release(System.nanoTime() - admittedAt));
+            }));
+            return admitted
+                    .doOnSuccess(v -> {
+                        int second = (int) Math.min(SECONDS - 1, (arrived - start) / 1_000_000_000L);
+                        latencies.get(second).add(System.nanoTime() - arrived);
+                    })
+                    .onErrorResume(AdaptiveLimiter.Rejected.class, e -> {
+                        rejected.incrementAndGet();
+                        return Mono.empty();
+                    });
+        });
+    }
+}
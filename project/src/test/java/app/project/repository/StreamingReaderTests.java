@@ -0,0 +1,124 @@
+package app.project.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Runs StreamingReader against a stub driver whose result produces rows only as they are
+// requested, like a portal does, and reads them like the socket of a slow client
+class StreamingReaderTests {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final int FETCH_SIZE = 500;
+
+    private static final int SOCKET_WINDOW = 64;
+
+    private final AtomicInteger fetchSize = new AtomicInteger();
+
+    private final AtomicLong requested = new AtomicLong();
+
+    private final StreamingReader reader = new StreamingReader();
+
+    StreamingReaderTests() {
+        ReflectionTestUtils.setField(reader, "template", new R2dbcEntityTemplate(factory()));
+        ReflectionTestUtils.setField(reader, "fetchSize", FETCH_SIZE);
+    }
+
+    @Test
+    void readsThroughAPortalAtTheConfiguredFetchSize() {
+        assertEquals(3L, reader.stream("SELECT id FROM media", (row, metadata) -> row.get(0)).take(3).count().block());
+
+        assertEquals(FETCH_SIZE, fetchSize.get());
+    }
+
+    @Test
+    void slowSubscriberKeepsRowsInFlightBounded() {
+        AtomicLong written = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+
+        reader.stream("SELECT id FROM media", (row, metadata) -> row.get(0)).subscribe(new BaseSubscriber<Object>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(SOCKET_WINDOW);
+            }
+
+            @Override
+            protected void hookOnNext(Object id) {
+                long count = written.incrementAndGet();
+                maxInFlight.accumulateAndGet(requested.get() - count, Math::max);
+                if (count % SOCKET_WINDOW == 0) {
+                    request(SOCKET_WINDOW);
+                }
+            }
+        });
+
+        assertEquals((long) ROWS, written.get());
+        assertTrue(maxInFlight.get() <= SOCKET_WINDOW, "rows pulled ahead of the socket: " + maxInFlight.get());
+    }
+
+    private ConnectionFactory factory() {
+        Statement statement = (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] {Statement.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "fetchSize" -> {
+                        fetchSize.set((Integer) args[0]);
+                        yield proxy;
+                    }
+                    case "execute" -> Mono.just(result());
+                    default -> proxy;
+                });
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "createStatement" -> statement;
+                    default -> Mono.empty();
+                });
+        return new ConnectionFactory() {
+            @Override
+            public Publisher<? extends Connection> create() {
+                return Mono.just(connection);
+            }
+
+            @Override
+            public ConnectionFactoryMetadata getMetadata() {
+                return () -> "PostgreSQL";
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Result result() {
+        return (Result) Proxy.newProxyInstance(Result.class.getClassLoader(), new Class<?>[] {Result.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "map" -> Flux.range(1, ROWS)
+                            .doOnRequest(n -> requested.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b))
+                            .map(id -> ((BiFunction<Row, Object, Object>) args[0]).apply(row(id), null));
+                    case "getRowsUpdated" -> Mono.just(0L);
+                    default -> Flux.empty();
+                });
+    }
+
+    private static Row row(long id) {
+        return (Row) Proxy.newProxyInstance(Row.class.getClassLoader(), new Class<?>[] {Row.class},
+                (proxy, method, args) -> id);
+    }
+}
@@ -0,0 +1,103 @@
+package app.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.model.Change;
+import app.project.model.ChangeCursor;
+import app.project.repository.ChangeLogRepository;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+// Needs the compose database, like ProjectApplicationTests. Two transactions log a change each;
+// the one that took the lower id commits last, which is what an id cursor skips
+@SpringBootTest
+class ChangeFeedTests {
+
+    // Entity ids no real row has, so the test only sees its own changes
+    private static final long EARLIER = -1;
+
+    private static final long LATER = -2;
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @AfterEach
+    void deleteTestChanges() {
+        template.getDatabaseClient().sql("DELETE FROM change_log WHERE entity_id < 0").then().block();
+    }
+
+    @Test
+    void changeCommittedAfterALaterIdIsNotSkipped() {
+        ChangeCursor start = ChangeCursor.before(changeLogRepository.findHorizon().block());
+        Connection earlier = Mono.from(connectionFactory.create()).block();
+        Connection later = Mono.from(connectionFactory.create()).block();
+        try {
+            StepVerifier.create(changeFeed.changes(null).filter(ChangeFeedTests::isTestChange))
+                    .expectSubscription()
+                    .then(() -> {
+                        begin(earlier);
+                        log(earlier, EARLIER);
+                        begin(later);
+                        log(later, LATER);
+                        commit(later);
+                    })
+                    // Held back while the earlier transaction runs, rather than sent ahead of it
+                    .expectNoEvent(Duration.ofSeconds(3))
+                    .then(() -> commit(earlier))
+                    .assertNext(change -> assertEquals(EARLIER, change.getEntityId()))
+                    .assertNext(change -> assertEquals(LATER, change.getEntityId()))
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(10));
+
+            // A client resuming from before both gets them in the same order
+            StepVerifier.create(changeFeed.changes(start).filter(ChangeFeedTests::isTestChange).take(2))
+                    .assertNext(change -> assertEquals(EARLIER, change.getEntityId()))
+                    .assertNext(change -> assertEquals(LATER, change.getEntityId()))
+                    .expectComplete()
+                    .verify(Duration.ofSeconds(10));
+        } finally {
+            Mono.from(earlier.close()).block();
+            Mono.from(later.close()).block();
+        }
+    }
+
+    private static boolean isTestChange(Change change) {
+        return change.getEntityId() < 0;
+    }
+
+    private static void begin(Connection connection) {
+        Mono.from(connection.beginTransaction()).block();
+    }
+
+    private static void commit(Connection connection) {
+        Mono.from(connection.commitTransaction()).block();
+    }
+
+    private static void log(Connection connection, long entityId) {
+        Flux.from(connection.createStatement(
+                        "INSERT INTO change_log (entity, entity_id, operation) VALUES ('media', " + entityId + ", 'UPDATE')")
+                        .execute())
+                .flatMap(result -> result.getRowsUpdated())
+                .blockLast();
+    }
+}
@@ -0,0 +1,58 @@
+package app.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class EntityCacheTests {
+
+    private final EntityCache<String> cache = new EntityCache<>("test", 100, Duration.ofMinutes(1));
+
+    @Test
+    void loadThatRacedWithWriteIsNotCached() {
+        AtomicReference<String> row = new AtomicReference<>("v1");
+        Sinks.Empty<Void> readerHeld = Sinks.empty();
+        AtomicReference<String> slowReaderSaw = new AtomicReference<>();
+
+        // The reader fetches v1, then stalls before the value reaches the cache
+        cache.get(1L, id -> Mono.fromSupplier(row::get).delayUntil(value -> readerHeld.asMono()))
+                .subscribe(slowReaderSaw::set);
+
+        row.set("v2");
+        cache.invalidate(1L);
+        readerHeld.tryEmitEmpty();
+
+        assertEquals("v1", slowReaderSaw.get());
+        assertEquals("v2", cache.get(1L, id -> Mono.fromSupplier(row::get)).block());
+    }
+
+    @Test
+    void readsAfterInvalidationSeeTheWrite() {
+        AtomicReference<String> row = new AtomicReference<>("v1");
+
+        assertEquals("v1", cache.get(1L, id -> Mono.fromSupplier(row::get)).block());
+        row.set("v2");
+        cache.invalidate(1L);
+
+        assertEquals("v2", cache.get(1L, id -> Mono.fromSupplier(row::get)).block());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(7L, id -> Mono.fromSupplier(() -> "row" + loads.incrementAndGet())).block();
+        assertEquals("row1", cache.get(7L, id -> Mono.fromSupplier(() -> "row" + loads.incrementAndGet())).block());
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+}
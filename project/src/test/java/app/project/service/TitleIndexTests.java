@@ -0,0 +1,56 @@
+package app.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TitleIndexTests {
+
+    private final TitleIndex index = new TitleIndex();
+
+    @Test
+    void ranksExactThenPrefixThenWordThenSubstring() {
+        index.put(1L, "Lost Star");
+        index.put(2L, "Starship Troopers");
+        index.put(3L, "Star");
+        index.put(4L, "Mustard");
+        index.put(5L, "Star Wars");
+        index.put(6L, "Heat");
+
+        assertEquals(List.of(3L, 5L, 2L, 1L, 4L), index.search("star", 10));
+        assertEquals(List.of(4L), index.search("tard", 10));
+        assertEquals(List.of(3L, 5L), index.search("star", 2));
+    }
+
+    @Test
+    void shortQueriesMatchWordPrefixes() {
+        index.put(1L, "The Matrix");
+        index.put(2L, "Amadeus");
+
+        assertEquals(List.of(1L), index.search("m", 10));
+        assertEquals(List.of(1L), index.search("ma", 10));
+        assertEquals(List.of(2L), index.search("am", 10));
+    }
+
+    @Test
+    void ignoresCaseAccentsAndPunctuation() {
+        index.put(1L, "Amélie: Le Fabuleux-Destin");
+
+        assertEquals(List.of(1L), index.search("AMELIE le", 10));
+        assertEquals(List.of(1L), index.search("fabuleux destin", 10));
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        index.put(1L, "Alien");
+        index.put(1L, "Aliens");
+        index.put(2L, "Predator");
+        index.remove(2L);
+
+        assertEquals(List.of(1L), index.search("aliens", 10));
+        assertEquals(List.of(), index.search("predator", 10));
+        assertEquals(1, index.size());
+    }
+}
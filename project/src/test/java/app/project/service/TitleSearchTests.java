@@ -0,0 +1,72 @@
+package app.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.model.Change;
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import reactor.core.publisher.Mono;
+
+// Needs the compose database, like ProjectApplicationTests. The writes go through the repository
+// and ChangePublisher only, the way another instance's would, so this instance learns of them
+// from the change feed alone
+@SpringBootTest
+class TitleSearchTests {
+
+    private static final String TITLE_PREFIX = "Title search test ";
+
+    @Autowired
+    private TitleSearch titleSearch;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private ChangePublisher changePublisher;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @AfterEach
+    void deleteRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then().block();
+    }
+
+    @Test
+    void renameByAnotherInstanceIsSearchable() {
+        Media media = new Media();
+        media.setTitle(TITLE_PREFIX + "qzvwx");
+        media.setReleaseDate(LocalDate.of(1801, 1, 1));
+        media.setType("Movie");
+        Media saved = mediaRepository.save(media)
+                .flatMap(inserted -> changePublisher.inserted(Change.MEDIA, List.of(inserted), Media::getId).thenReturn(inserted))
+                .block();
+        assertEquals(List.of(saved.getId()), eventually("qzvwx", List.of(saved.getId())));
+
+        saved.setTitle(TITLE_PREFIX + "jkyfp");
+        mediaRepository.save(saved)
+                .flatMap(renamed -> changePublisher.updated(Change.MEDIA, renamed, Media::getId))
+                .block();
+        assertEquals(List.of(saved.getId()), eventually("jkyfp", List.of(saved.getId())));
+        assertEquals(List.of(), eventually("qzvwx", List.of()));
+    }
+
+    // The feed polls, so a change may take a moment to arrive
+    private List<Long> eventually(String query, List<Long> expected) {
+        return Mono.defer(() -> titleSearch.search(query, 10).map(Media::getId).collectList())
+                .filter(expected::equals)
+                .repeatWhenEmpty(attempts -> attempts.take(50).concatMap(attempt -> Mono.delay(Duration.ofMillis(200))))
+                .switchIfEmpty(Mono.defer(() -> titleSearch.search(query, 10).map(Media::getId).collectList()))
+                .block();
+    }
+}
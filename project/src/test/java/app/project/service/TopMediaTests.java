@@ -0,0 +1,113 @@
+package app.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+
+import app.project.model.CursorPage;
+import app.project.model.Media;
+import app.project.repository.MediaRepository;
+import reactor.core.publisher.Flux;
+
+// Needs the compose database, like ProjectApplicationTests. The rows are dated on a day no real
+// media has, so the top list over that day holds only them
+@SpringBootTest
+class TopMediaTests {
+
+    private static final LocalDate DAY = LocalDate.of(1801, 1, 1);
+
+    private static final String TITLE_PREFIX = "Top media test ";
+
+    @Autowired
+    private MediaService mediaService;
+
+    @Autowired
+    private MediaRepository mediaRepository;
+
+    @Autowired
+    private R2dbcEntityTemplate template;
+
+    @BeforeEach
+    void insertRows() {
+        Flux.just(media("unrated", null), media("low", 2.0), media("high", 9.0))
+                .concatMap(mediaRepository::save)
+                .blockLast();
+    }
+
+    @AfterEach
+    void deleteRows() {
+        template.getDatabaseClient().sql("DELETE FROM media WHERE title LIKE '" + TITLE_PREFIX + "%'").then().block();
+    }
+
+    @Test
+    void unratedMediaComeLastInEitherOrder() {
+        assertEquals(List.of("high", "low", "unrated"), titles(top("desc", 10, null)));
+        assertEquals(List.of("low", "high", "unrated"), titles(top("asc", 10, null)));
+    }
+
+    @Test
+    void unratedMediaReadBackWithoutARating() {
+        List<Media> items = top("desc", 10, null).getItems();
+        assertNull(items.get(items.size() - 1).getAverageRating());
+    }
+
+    @Test
+    void pagesContinueWhereThePreviousEnded() {
+        CursorPage<Media> first = top("desc", 2, null);
+        assertEquals(List.of("high", "low"), titles(first));
+        CursorPage<Media> second = top("desc", 2, first.getNextCursor());
+        assertEquals(List.of("unrated"), titles(second));
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void pagesOfOneWalkIntoTheUnratedMedia() {
+        mediaRepository.save(media("also unrated", null)).block();
+        List<String> titles = new ArrayList<>();
+        String after = null;
+        do {
+            CursorPage<Media> page = top("asc", 1, after);
+            titles.addAll(titles(page));
+            after = page.getNextCursor();
+        } while (after != null);
+        assertEquals(List.of("low", "high", "unrated", "also unrated"), titles);
+    }
+
+    // An OFFSET page would shift by the new row and return high a second time
+    @Test
+    void rowAddedBeforeTheCursorDoesNotShiftTheNextPage() {
+        CursorPage<Media> first = top("desc", 1, null);
+        assertEquals(List.of("high"), titles(first));
+        mediaRepository.save(media("highest", 10.0)).block();
+        assertEquals(List.of("low"), titles(top("desc", 1, first.getNextCursor())));
+    }
+
+    private CursorPage<Media> top(String order, int n, String after) {
+        return mediaService.getTopMedia("rating", order, n, after, null, DAY, DAY).block();
+    }
+
+    private static List<String> titles(CursorPage<Media> page) {
+        return page.getItems().stream()
+                .map(media -> media.getTitle().substring(TITLE_PREFIX.length()))
+                .toList();
+    }
+
+    private static Media media(String name, Double rating) {
+        Media media = new Media();
+        media.setTitle(TITLE_PREFIX + name);
+        media.setReleaseDate(DAY);
+        media.setAverageRating(rating);
+        media.setType("Movie");
+        return media;
+    }
+}
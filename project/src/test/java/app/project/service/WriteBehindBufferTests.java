@@ -0,0 +1,112 @@
+package app.project.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class WriteBehindBufferTests {
+
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @Test
+    void coalescesDuplicateKeysIntoOneBatch() {
+        WriteBehindBuffer<String, String> buffer = new WriteBehindBuffer<>(this::writeAll, key -> Mono.just(key + "!"),
+                100, 10, Duration.ofMillis(50), Duration.ofSeconds(1));
+
+        List<String> rows = Flux.just("a", "b", "a", "c")
+                .flatMap(buffer::write)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("a", "b", "c"), batches.get(0));
+        assertEquals(List.of("A", "A", "B", "C"), rows.stream().sorted().toList());
+    }
+
+    @Test
+    void keyLeftOutOfTheBatchCompletesEmpty() {
+        WriteBehindBuffer<String, String> buffer = new WriteBehindBuffer<>(
+                keys -> writeAll(keys.stream().filter(key -> !"missing".equals(key)).toList()), key -> Mono.just(key),
+                100, 10, Duration.ofMillis(10), Duration.ofSeconds(1));
+
+        Mono<String> found = buffer.write("found").cache();
+        Mono<String> missing = buffer.write("missing").cache();
+        found.subscribe();
+        missing.subscribe();
+
+        assertEquals("FOUND", found.block(Duration.ofSeconds(5)));
+        assertNull(missing.block(Duration.ofSeconds(5)));
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void failedBatchIsRetriedKeyByKey() {
+        WriteBehindBuffer<String, String> buffer = new WriteBehindBuffer<>(keys -> Mono.error(new IllegalStateException()),
+                key -> "bad".equals(key) ? Mono.error(new IllegalArgumentException(key)) : Mono.just(key.toUpperCase()),
+                100, 10, Duration.ofMillis(10), Duration.ofSeconds(1));
+
+        Mono<String> good = buffer.write("good").cache();
+        Mono<String> bad = buffer.write("bad").cache();
+        good.subscribe(value -> { }, error -> { });
+        bad.subscribe(value -> { }, error -> { });
+
+        assertEquals("GOOD", good.block(Duration.ofSeconds(5)));
+        assertThrows(IllegalArgumentException.class, () -> bad.block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    void fullBufferRejectsAfterTheOfferTimeout() {
+        Sinks.Empty<Void> held = Sinks.empty();
+        WriteBehindBuffer<String, String> buffer = new WriteBehindBuffer<>(keys -> held.asMono().then(writeAll(keys)),
+                key -> Mono.just(key), 2, 1, Duration.ofMillis(1), Duration.ofMillis(50));
+
+        // The first write is being flushed and holds up the pipeline; the second takes the last place
+        buffer.write("a").subscribe();
+        sleep(20);
+        buffer.write("b").subscribe();
+        sleep(20);
+
+        assertThrows(ResponseStatusException.class, () -> buffer.write("c").block(Duration.ofSeconds(5)));
+        held.tryEmitEmpty();
+    }
+
+    @Test
+    void closeFlushesQueuedWrites() {
+        WriteBehindBuffer<String, String> buffer = new WriteBehindBuffer<>(this::writeAll, key -> Mono.just(key),
+                100, 100, Duration.ofMinutes(1), Duration.ofSeconds(1));
+        Mono<String> pending = buffer.write("a").cache();
+        pending.subscribe();
+
+        buffer.close(Duration.ofSeconds(5));
+
+        assertEquals("A", pending.block(Duration.ofSeconds(1)));
+        assertThrows(ResponseStatusException.class, () -> buffer.write("b").block(Duration.ofSeconds(1)));
+    }
+
+    private Mono<Map<String, String>> writeAll(List<String> keys) {
+        batches.add(keys);
+        Map<String, String> rows = new HashMap<>();
+        keys.forEach(key -> rows.put(key, key.toUpperCase()));
+        return Mono.just(rows);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}